@@ -6,8 +6,11 @@ import tech.ydb.core.grpc.GrpcTransport;
 import tech.ydb.query.QueryClient;
 import tech.ydb.query.tools.SessionRetryContext;
 import tech.ydb.topic.TopicClient;
+import tech.ydb.topic.description.Codec;
 
 import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Пример работы с топиками в YDB
@@ -18,7 +21,26 @@ public class Application {
     private static final Logger LOGGER = LoggerFactory.getLogger(Application.class);
     private static final String CONNECTION_STRING = "grpc://localhost:2136/local";
 
+    // Формат сообщений task_status, общий для писателей и читателя
+    private static final StatusMessageCodec STATUS_CODEC = StatusMessageCodec.BINARY;
+
+    // Сжатие сообщений task_status при передаче и хранении.
+    // Сообщения о статусах короткие, поэтому выигрыш от сжатия отдельного сообщения невелик
+    private static final Codec STATUS_TOPIC_CODEC = Codec.RAW;
+
+    // Параметры пакетной публикации обновлений статусов
+    private static final int MAX_IN_FLIGHT = 1000;
+    private static final int UPDATE_BATCH_SIZE = 100;
+    private static final Duration UPDATE_BATCH_LINGER = Duration.ofMillis(50);
+
+    /**
+     * Запуск с аргументом "async" публикует обновления статусов через AsyncStatusUpdateService,
+     * с аргументом "outbox" - через TransactionalStatusUpdateService,
+     * без аргументов каждое обновление дожидается подтверждения записи в топик.
+     */
     public static void main(String[] args) {
+        var mode = args.length > 0 ? args[0] : "sync";
+
         try (GrpcTransport grpcTransport = GrpcTransport
                 .forConnectionString(CONNECTION_STRING)
                 .withConnectTimeout(Duration.ofSeconds(10))
@@ -45,29 +67,12 @@ public class Application {
                 printIssue(issue);
             }
 
-            // Создаем сервис для обновления статусов тикетов через топики
-            var updateService = new StatusUpdateService(topicClient, issueYdbRepository);
-
-            LOGGER.info("Update status all tickets: NULL -> OPEN ");
-            for (var issue : allIssues) {
-                updateService.update(issue.id(), "OPEN");
+            switch (mode) {
+                case "async" -> runAsyncUpdates(topicClient, issueYdbRepository, allIssues);
+                case "outbox" -> runOutboxUpdates(topicClient, retryCtx, issueYdbRepository, allIssues);
+                default -> runSyncUpdates(topicClient, issueYdbRepository, allIssues);
             }
 
-            // Запускаем воркер для чтения сообщений из топика в отдельном потоке
-            // он будет получать события об обновлении тикетов и эмулировать отправку 
-            // уведомлений
-            var readerWorker = new ReaderWorker(topicClient);
-            readerWorker.run();
-
-            LOGGER.info("Update status all tickets: OPEN -> IN_PROGRESS ");
-            for (var issue : allIssues) {
-                updateService.update(issue.id(), "IN_PROGRESS");
-            }
-
-            // Корректно завершаем работу сервисов
-            updateService.shutdown();
-            readerWorker.shutdown();
-
             LOGGER.info("Print all issues: ");
             for (var ticket : issueYdbRepository.findAll()) {
                 printIssue(ticket);
@@ -75,6 +80,96 @@ public class Application {
         }
     }
 
+    private static void runSyncUpdates(
+            TopicClient topicClient,
+            IssueYdbRepository issueYdbRepository,
+            List<Issue> allIssues
+    ) {
+        // Создаем сервис для обновления статусов тикетов через топики
+        var updateService = new StatusUpdateService(topicClient, issueYdbRepository, STATUS_CODEC, STATUS_TOPIC_CODEC);
+
+        LOGGER.info("Update status all tickets: NULL -> OPEN ");
+        for (var issue : allIssues) {
+            updateService.update(issue.id(), "OPEN");
+        }
+
+        // Запускаем воркер для чтения сообщений из топика в отдельном потоке
+        // он будет получать события об обновлении тикетов и эмулировать отправку 
+        // уведомлений
+        var readerWorker = new ReaderWorker(topicClient, STATUS_CODEC);
+        readerWorker.run();
+
+        LOGGER.info("Update status all tickets: OPEN -> IN_PROGRESS ");
+        for (var issue : allIssues) {
+            updateService.update(issue.id(), "IN_PROGRESS");
+        }
+
+        // Корректно завершаем работу сервисов
+        updateService.shutdown();
+        readerWorker.shutdown();
+    }
+
+    private static void runAsyncUpdates(
+            TopicClient topicClient,
+            IssueYdbRepository issueYdbRepository,
+            List<Issue> allIssues
+    ) {
+        // Обновления не ждут подтверждения по одному: они копятся в пачки,
+        // а вызывающий код ждет только завершения всех future
+        var updateService = new AsyncStatusUpdateService(
+                topicClient, issueYdbRepository, STATUS_CODEC, STATUS_TOPIC_CODEC, MAX_IN_FLIGHT, UPDATE_BATCH_SIZE, UPDATE_BATCH_LINGER
+        );
+
+        LOGGER.info("Update status all tickets: NULL -> OPEN ");
+        CompletableFuture.allOf(allIssues.stream()
+                .map(issue -> updateService.update(issue.id(), "OPEN"))
+                .toArray(CompletableFuture[]::new)
+        ).join();
+
+        var readerWorker = new ReaderWorker(topicClient, STATUS_CODEC);
+        readerWorker.run();
+
+        LOGGER.info("Update status all tickets: OPEN -> IN_PROGRESS ");
+        CompletableFuture.allOf(allIssues.stream()
+                .map(issue -> updateService.update(issue.id(), "IN_PROGRESS"))
+                .toArray(CompletableFuture[]::new)
+        ).join();
+
+        updateService.shutdown();
+        readerWorker.shutdown();
+    }
+
+    private static void runOutboxUpdates(
+            TopicClient topicClient,
+            SessionRetryContext retryCtx,
+            IssueYdbRepository issueYdbRepository,
+            List<Issue> allIssues
+    ) {
+        // Статусы и события об их изменении фиксируются одной транзакцией на пачку обновлений
+        var updateService = new TransactionalStatusUpdateService(
+                topicClient, retryCtx, issueYdbRepository, STATUS_CODEC, STATUS_TOPIC_CODEC,
+                UPDATE_BATCH_SIZE, UPDATE_BATCH_LINGER
+        );
+
+        LOGGER.info("Update status all tickets: NULL -> OPEN ");
+        CompletableFuture.allOf(allIssues.stream()
+                .map(issue -> updateService.update(issue.id(), "OPEN"))
+                .toArray(CompletableFuture[]::new)
+        ).join();
+
+        var readerWorker = new ReaderWorker(topicClient, STATUS_CODEC);
+        readerWorker.run();
+
+        LOGGER.info("Update status all tickets: OPEN -> IN_PROGRESS ");
+        CompletableFuture.allOf(allIssues.stream()
+                .map(issue -> updateService.update(issue.id(), "IN_PROGRESS"))
+                .toArray(CompletableFuture[]::new)
+        ).join();
+
+        updateService.shutdown();
+        readerWorker.shutdown();
+    }
+
     private static void printIssue(Issue issue) {
         LOGGER.info("Issue: {}", issue);
     }
@@ -0,0 +1,192 @@
+package tech.ydb.app;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import tech.ydb.topic.TopicClient;
+import tech.ydb.topic.description.Codec;
+import tech.ydb.topic.settings.WriterSettings;
+import tech.ydb.topic.write.AsyncWriter;
+import tech.ydb.topic.write.Message;
+import tech.ydb.topic.write.QueueOverflowException;
+
+/**
+ * Асинхронный сервис для обновления статусов тикетов через топики YDB.
+ * <p>
+ * В отличие от {@link StatusUpdateService} не ждет подтверждения записи каждого сообщения:
+ * обновления копятся не дольше linger или до maxBatchSize штук, статусы пачки записываются
+ * в таблицу одним запросом, а сообщения отправляются через AsyncWriter без flush'а.
+ * Future обновления завершается, когда сервер подтвердил запись его сообщения в топик.
+ * <p>
+ * Число неподтвержденных обновлений ограничено maxInFlight: при заполнении окна
+ * вызов update блокируется, пока не придут подтверждения уже отправленных сообщений.
+ * Пачки обрабатываются по одной, поэтому сообщения попадают в топик в порядке вызовов update.
+ *
+ * @author Kirill Kurdyukov
+ */
+public class AsyncStatusUpdateService {
+    private final AsyncWriter writer;
+    private final IssueYdbRepository issueYdbRepository;
+    private final StatusMessageCodec codec;
+    private final int maxBatchSize;
+    private final long lingerNanos;
+    private final Semaphore inFlight;
+    private final int maxInFlight;
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        var thread = new Thread(runnable, "status-update-service");
+        thread.setDaemon(true);
+
+        return thread;
+    });
+
+    private final Object lock = new Object();
+    private List<PendingUpdate> pending = new ArrayList<>();
+    private ScheduledFuture<?> lingerTimer;
+    private boolean flushInProgress = false;
+
+    public AsyncStatusUpdateService(
+            TopicClient topicClient,
+            IssueYdbRepository issueYdbRepository,
+            StatusMessageCodec codec,
+            Codec topicCodec,
+            int maxInFlight,
+            int maxBatchSize,
+            Duration linger
+    ) {
+        // Буфер writer'а вмещает все окно, поэтому send никогда не упирается в его переполнение
+        this.writer = topicClient.createAsyncWriter(
+                WriterSettings.newBuilder()
+                        .setProducerId("producer-task_status")
+                        .setTopicPath("task_status")
+                        .setMaxSendBufferMessagesCount(maxInFlight)
+                        .setCodec(topicCodec)
+                        .build()
+        );
+        this.issueYdbRepository = issueYdbRepository;
+        this.codec = codec;
+        this.maxBatchSize = maxBatchSize;
+        this.lingerNanos = linger.toNanos();
+        this.maxInFlight = maxInFlight;
+        this.inFlight = new Semaphore(maxInFlight);
+        this.writer.init().join();
+    }
+
+    public CompletableFuture<Void> update(long id, String status) {
+        // Ждем свободного места в окне неподтвержденных обновлений
+        inFlight.acquireUninterruptibly();
+
+        var update = new PendingUpdate(id, status, new CompletableFuture<>());
+
+        synchronized (lock) {
+            pending.add(update);
+
+            if (pending.size() >= maxBatchSize) {
+                flushLocked();
+            } else if (lingerTimer == null) {
+                lingerTimer = scheduler.schedule(this::flush, lingerNanos, TimeUnit.NANOSECONDS);
+            }
+        }
+
+        return update.future();
+    }
+
+    /**
+     * Отправляет накопленные обновления, не дожидаясь истечения linger.
+     */
+    public void flush() {
+        synchronized (lock) {
+            flushLocked();
+        }
+    }
+
+    public void shutdown() {
+        // Дожидаемся подтверждения всех обновлений: окно освободится целиком,
+        // только когда последняя пачка будет записана
+        flush();
+        inFlight.acquireUninterruptibly(maxInFlight);
+        inFlight.release(maxInFlight);
+
+        scheduler.shutdown();
+
+        try {
+            // Корректно завершаем работу writer'а
+            writer.shutdown().get(10, TimeUnit.SECONDS);
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private void flushLocked() {
+        if (lingerTimer != null) {
+            lingerTimer.cancel(false);
+            lingerTimer = null;
+        }
+
+        if (pending.isEmpty() || flushInProgress) {
+            return;
+        }
+
+        var batch = pending;
+        pending = new ArrayList<>();
+        flushInProgress = true;
+
+        // В таблицу достаточно записать последний статус каждого тикета,
+        // а в топик уходит каждое обновление
+        var statuses = new LinkedHashMap<Long, String>();
+        for (var update : batch) {
+            statuses.put(update.id(), update.status());
+        }
+
+        issueYdbRepository.updateStatusesAsync(statuses).whenComplete((ignored, th) -> {
+            for (var update : batch) {
+                if (th != null) {
+                    complete(update, th);
+                } else {
+                    send(update);
+                }
+            }
+
+            synchronized (lock) {
+                flushInProgress = false;
+
+                // за время записи могли накопиться новые обновления
+                if (pending.size() >= maxBatchSize) {
+                    flushLocked();
+                } else if (!pending.isEmpty() && lingerTimer == null) {
+                    lingerTimer = scheduler.schedule(this::flush, lingerNanos, TimeUnit.NANOSECONDS);
+                }
+            }
+        });
+    }
+
+    private void send(PendingUpdate update) {
+        try {
+            writer.send(Message.newBuilder()
+                    .setData(codec.encode(update.id(), update.status()))
+                    .build()
+            ).whenComplete((ack, th) -> complete(update, th));
+        } catch (QueueOverflowException e) {
+            complete(update, e);
+        }
+    }
+
+    private void complete(PendingUpdate update, Throwable th) {
+        inFlight.release();
+
+        if (th != null) {
+            update.future().completeExceptionally(th);
+        } else {
+            update.future().complete(null);
+        }
+    }
+
+    private record PendingUpdate(long id, String status, CompletableFuture<Void> future) {
+    }
+}
@@ -0,0 +1,36 @@
+package tech.ydb.app;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Двоичный формат сообщений task_status:
+ * <pre>
+ * [id: 8 байт, big-endian][статус: UTF-8 до конца сообщения]
+ * </pre>
+ * id читается прямо из массива байт сообщения без промежуточной строки и разбора числа,
+ * а статус декодируется из того же массива по смещению, без копирования.
+ *
+ * @author Kirill Kurdyukov
+ */
+public class BinaryStatusMessageCodec implements StatusMessageCodec {
+    private static final int ID_SIZE = Long.BYTES;
+
+    @Override
+    public byte[] encode(long id, String status) {
+        var statusBytes = status.getBytes(StandardCharsets.UTF_8);
+
+        return ByteBuffer.allocate(ID_SIZE + statusBytes.length)
+                .putLong(id)
+                .put(statusBytes)
+                .array();
+    }
+
+    @Override
+    public StatusMessage decode(byte[] data) {
+        return new StatusMessage(
+                ByteBuffer.wrap(data).getLong(0),
+                new String(data, ID_SIZE, data.length - ID_SIZE, StandardCharsets.UTF_8)
+        );
+    }
+}
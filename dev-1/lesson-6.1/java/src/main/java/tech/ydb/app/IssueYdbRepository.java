@@ -3,6 +3,7 @@ package tech.ydb.app;
 import java.time.Instant;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ThreadLocalRandom;
 
@@ -11,13 +12,23 @@ import tech.ydb.core.Result;
 import tech.ydb.query.tools.QueryReader;
 import tech.ydb.query.tools.SessionRetryContext;
 import tech.ydb.table.query.Params;
+import tech.ydb.table.values.ListType;
+import tech.ydb.table.values.PrimitiveType;
 import tech.ydb.table.values.PrimitiveValue;
+import tech.ydb.table.values.StructType;
 
 /**
  * @author Kirill Kurdyukov
  */
 public class IssueYdbRepository {
 
+    private static final String UPDATE_STATUSES = """
+            DECLARE $batch AS List<Struct<id: Int64, status: Text>>;
+
+            UPDATE issues ON
+            SELECT id, status FROM AS_TABLE($batch);
+            """;
+
     private final QueryServiceHelper queryServiceHelper;
 
     public IssueYdbRepository(SessionRetryContext retryCtx) {
@@ -36,6 +47,23 @@ public class IssueYdbRepository {
         );
     }
 
+    /**
+     * Обновление статусов нескольких тикетов одним запросом
+     */
+    public CompletableFuture<Void> updateStatusesAsync(Map<Long, String> statuses) {
+        return queryServiceHelper.executeQueryAsync(UPDATE_STATUSES, TxMode.SERIALIZABLE_RW, statusesParams(statuses))
+                .thenApply(queryReader -> null);
+    }
+
+    /**
+     * Обновление статусов нескольких тикетов с коммитом переданной транзакции.
+     * Позволяет зафиксировать изменения таблицы вместе с другими операциями транзакции,
+     * например с отправкой сообщений в топик.
+     */
+    public void updateStatusesWithCommit(TransactionHelper tx, Map<Long, String> statuses) {
+        tx.executeQueryWithCommit(UPDATE_STATUSES, statusesParams(statuses));
+    }
+
     public List<IssueLinkCount> linkTicketsNoInteractive(long idT1, long idT2) {
         var valueReader = queryServiceHelper.executeQuery("""
                         DECLARE $t1 AS Int64;
@@ -166,6 +194,20 @@ public class IssueYdbRepository {
         );
     }
 
+    private static Params statusesParams(Map<Long, String> statuses) {
+        var structType = StructType.of(
+                "id", PrimitiveType.Int64,
+                "status", PrimitiveType.Text
+        );
+
+        return Params.of("$batch", ListType.of(structType).newValue(
+                statuses.entrySet().stream().map(entry -> structType.newValue(
+                        "id", PrimitiveValue.newInt64(entry.getKey()),
+                        "status", PrimitiveValue.newText(entry.getValue())
+                )).toList()
+        ));
+    }
+
     private static List<IssueLinkCount> getLinkTicketPairs(QueryReader valueReader) {
         var linkTicketPairs = new ArrayList<IssueLinkCount>();
         var resultSet = valueReader.getResultSet(0);
@@ -32,9 +32,13 @@ public class QueryServiceHelper {
     }
 
     public QueryReader executeQuery(String yql, TxMode txMode, Params params) {
+        return executeQueryAsync(yql, txMode, params).join();
+    }
+
+    public CompletableFuture<QueryReader> executeQueryAsync(String yql, TxMode txMode, Params params) {
         return retryCtx.supplyResult(
                 session -> QueryReader.readFrom(session.createQuery(yql, txMode, params))
-        ).join().getValue();
+        ).thenApply(Result::getValue);
     }
 
     public <T> T executeInTx(TxMode txMode, Function<TransactionHelper, T> tx) {
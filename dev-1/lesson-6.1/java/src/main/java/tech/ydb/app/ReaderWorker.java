@@ -19,10 +19,11 @@ public class ReaderWorker {
     private static final Logger LOGGER = LoggerFactory.getLogger(Application.class);
 
     private final SyncReader reader;
+    private final StatusMessageCodec codec;
 
     private volatile CompletableFuture<Void> readerJob;
 
-    public ReaderWorker(TopicClient topicClient) {
+    public ReaderWorker(TopicClient topicClient, StatusMessageCodec codec) {
         // Создаем синхронный reader для чтения сообщений из топика task_status
         this.reader = topicClient.createSyncReader(
                 ReaderSettings.newBuilder()
@@ -32,6 +33,7 @@ public class ReaderWorker {
         );
 
         reader.init();
+        this.codec = codec;
     }
 
     public void run() {
@@ -53,7 +55,7 @@ public class ReaderWorker {
                             }
 
                             // Выводим полученное сообщение
-                            LOGGER.info("Received message: {}", new String(message.getData()));
+                            LOGGER.info("Received message: {}", codec.decode(message.getData()));
 
                             if (message.getSeqNo() == 6) {
                                 break; // в примере мы вычитываем 6 обновлений
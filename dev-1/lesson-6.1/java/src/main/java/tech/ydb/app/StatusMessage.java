@@ -0,0 +1,9 @@
+package tech.ydb.app;
+
+/**
+ * Содержимое сообщения task_status: новый статус тикета.
+ *
+ * @author Kirill Kurdyukov
+ */
+public record StatusMessage(long id, String status) {
+}
@@ -0,0 +1,22 @@
+package tech.ydb.app;
+
+/**
+ * Формат сообщений task_status. Писатели и читатели топика должны использовать один и тот же кодек.
+ *
+ * @author Kirill Kurdyukov
+ */
+public interface StatusMessageCodec {
+    /**
+     * Исходный строковый формат "[id : status]"
+     */
+    StatusMessageCodec STRING = new StringStatusMessageCodec();
+
+    /**
+     * Компактный двоичный формат: id фиксированной длины и статус
+     */
+    StatusMessageCodec BINARY = new BinaryStatusMessageCodec();
+
+    byte[] encode(long id, String status);
+
+    StatusMessage decode(byte[] data);
+}
@@ -1,10 +1,10 @@
 package tech.ydb.app;
 
-import java.nio.charset.StandardCharsets;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 import tech.ydb.topic.TopicClient;
+import tech.ydb.topic.description.Codec;
 import tech.ydb.topic.settings.WriterSettings;
 import tech.ydb.topic.write.Message;
 import tech.ydb.topic.write.SyncWriter;
@@ -17,16 +17,24 @@ import tech.ydb.topic.write.SyncWriter;
 public class StatusUpdateService {
     private final SyncWriter writer;
     private final IssueYdbRepository issueYdbRepository;
+    private final StatusMessageCodec codec;
 
-    public StatusUpdateService(TopicClient topicClient, IssueYdbRepository issueYdbRepository) {
+    public StatusUpdateService(
+            TopicClient topicClient,
+            IssueYdbRepository issueYdbRepository,
+            StatusMessageCodec codec,
+            Codec topicCodec
+    ) {
         // Создаем синхронный writer для отправки сообщений в топик task_status
         this.writer = topicClient.createSyncWriter(
                 WriterSettings.newBuilder()
                         .setProducerId("producer-task_status")
                         .setTopicPath("task_status")
+                        .setCodec(topicCodec)
                         .build()
         );
         this.issueYdbRepository = issueYdbRepository;
+        this.codec = codec;
         this.writer.init();
     }
 
@@ -36,7 +44,7 @@ public class StatusUpdateService {
 
         // Отправляем сообщение об обновлении статуса в топик
         writer.send(Message.newBuilder()
-                .setData(("[" + id + " : " + status + "]").getBytes(StandardCharsets.UTF_8))
+                .setData(codec.encode(id, status))
                 .build()
         );
         writer.flush(); // ждем отправки
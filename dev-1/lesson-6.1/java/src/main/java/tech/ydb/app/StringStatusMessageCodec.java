@@ -0,0 +1,28 @@
+package tech.ydb.app;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Строковый формат "[id : status]".
+ *
+ * @author Kirill Kurdyukov
+ */
+public class StringStatusMessageCodec implements StatusMessageCodec {
+    private static final String SEPARATOR = " : ";
+
+    @Override
+    public byte[] encode(long id, String status) {
+        return ("[" + id + SEPARATOR + status + "]").getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public StatusMessage decode(byte[] data) {
+        var messageStr = new String(data, StandardCharsets.UTF_8);
+        var separator = messageStr.indexOf(SEPARATOR);
+
+        return new StatusMessage(
+                Long.parseLong(messageStr.substring(1, separator)),
+                messageStr.substring(separator + SEPARATOR.length(), messageStr.length() - 1)
+        );
+    }
+}
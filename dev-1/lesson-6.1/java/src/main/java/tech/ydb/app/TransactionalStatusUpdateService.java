@@ -0,0 +1,200 @@
+package tech.ydb.app;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import tech.ydb.common.transaction.TxMode;
+import tech.ydb.core.Status;
+import tech.ydb.query.tools.SessionRetryContext;
+import tech.ydb.topic.TopicClient;
+import tech.ydb.topic.description.Codec;
+import tech.ydb.topic.settings.SendSettings;
+import tech.ydb.topic.settings.WriterSettings;
+import tech.ydb.topic.write.Message;
+import tech.ydb.topic.write.SyncWriter;
+
+/**
+ * Сервис для обновления статусов тикетов, в котором изменение таблицы и сообщение в топик
+ * фиксируются одной транзакцией YDB.
+ * <p>
+ * В {@link StatusUpdateService} статус сначала записывается в таблицу, а затем отдельно
+ * публикуется в топик, поэтому падение между этими шагами теряет событие. Здесь сообщения
+ * отправляются в рамках транзакции через SendSettings.setTransaction, как в lesson-6.3:
+ * они станут видны читателям только вместе с коммитом обновления статусов.
+ * <p>
+ * Чтобы атомарность не стоила транзакции на каждое событие, обновления копятся не дольше linger
+ * или до maxBatchSize штук и фиксируются одним коммитом. Future обновления завершается после коммита.
+ *
+ * @author Kirill Kurdyukov
+ */
+public class TransactionalStatusUpdateService {
+    private static final Logger LOGGER = LoggerFactory.getLogger(TransactionalStatusUpdateService.class);
+
+    private final TopicClient topicClient;
+    private final SessionRetryContext retryCtx;
+    private final IssueYdbRepository issueYdbRepository;
+    private final StatusMessageCodec codec;
+    private final Codec topicCodec;
+    private final int maxBatchSize;
+    private final long lingerNanos;
+    // Все пачки пишутся одним потоком, поэтому события попадают в топик в порядке вызовов update
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        var thread = new Thread(runnable, "status-update-tx");
+        thread.setDaemon(true);
+
+        return thread;
+    });
+
+    private final Object lock = new Object();
+    private List<PendingUpdate> pending = new ArrayList<>();
+
+    // Пачки записываются по одной, поэтому писатель не используется конкурентно
+    private SyncWriter writer;
+
+    public TransactionalStatusUpdateService(
+            TopicClient topicClient,
+            SessionRetryContext retryCtx,
+            IssueYdbRepository issueYdbRepository,
+            StatusMessageCodec codec,
+            Codec topicCodec,
+            int maxBatchSize,
+            Duration linger
+    ) {
+        this.topicClient = topicClient;
+        this.retryCtx = retryCtx;
+        this.issueYdbRepository = issueYdbRepository;
+        this.codec = codec;
+        this.topicCodec = topicCodec;
+        this.maxBatchSize = maxBatchSize;
+        this.lingerNanos = linger.toNanos();
+    }
+
+    public CompletableFuture<Void> update(long id, String status) {
+        var update = new PendingUpdate(id, status, new CompletableFuture<>());
+
+        synchronized (lock) {
+            pending.add(update);
+
+            if (pending.size() >= maxBatchSize) {
+                scheduler.execute(this::flush);
+            } else if (pending.size() == 1) {
+                scheduler.schedule(this::flush, lingerNanos, TimeUnit.NANOSECONDS);
+            }
+        }
+
+        return update.future();
+    }
+
+    public void shutdown() {
+        // Задачи выполняются по очереди, поэтому к моменту выполнения этой задачи
+        // все ранее накопленные обновления будут зафиксированы
+        try {
+            scheduler.submit(this::flush).get();
+        } catch (InterruptedException | ExecutionException e) {
+            throw new RuntimeException(e);
+        }
+        scheduler.shutdown();
+
+        if (writer != null) {
+            shutdownWriter(writer);
+        }
+    }
+
+    private void flush() {
+        List<PendingUpdate> batch;
+
+        synchronized (lock) {
+            if (pending.isEmpty()) {
+                return;
+            }
+
+            batch = pending;
+            pending = new ArrayList<>();
+        }
+
+        try {
+            commitBatch(batch);
+
+            batch.forEach(update -> update.future().complete(null));
+        } catch (RuntimeException e) {
+            batch.forEach(update -> update.future().completeExceptionally(e));
+        }
+    }
+
+    private void commitBatch(List<PendingUpdate> batch) {
+        // В таблицу достаточно записать последний статус каждого тикета,
+        // а в топик уходит каждое обновление
+        var statuses = new LinkedHashMap<Long, String>();
+        for (var update : batch) {
+            statuses.put(update.id(), update.status());
+        }
+
+        retryCtx.supplyStatus(
+                session -> {
+                    var transaction = session.beginTransaction(TxMode.SERIALIZABLE_RW).join().getValue();
+
+                    if (writer == null) {
+                        writer = createWriter();
+                    }
+
+                    try {
+                        var sendSettings = SendSettings.newBuilder().setTransaction(transaction).build();
+
+                        for (var update : batch) {
+                            writer.send(
+                                    Message.newBuilder()
+                                            .setData(codec.encode(update.id(), update.status()))
+                                            .build(),
+                                    sendSettings
+                            );
+                        }
+                        writer.flush();
+
+                        // Статусы и сообщения пачки фиксируются одним коммитом
+                        issueYdbRepository.updateStatusesWithCommit(new TransactionHelper(transaction), statuses);
+                    } catch (RuntimeException e) {
+                        // после неудачной транзакции писатель может быть остановлен - пересоздадим его
+                        shutdownWriter(writer);
+                        writer = null;
+
+                        throw e;
+                    }
+
+                    return CompletableFuture.completedFuture(Status.SUCCESS);
+                }
+        ).join().expectSuccess();
+    }
+
+    private SyncWriter createWriter() {
+        var syncWriter = topicClient.createSyncWriter(
+                WriterSettings.newBuilder()
+                        .setProducerId("producer-task_status-tx")
+                        .setTopicPath("task_status")
+                        .setCodec(topicCodec)
+                        .build()
+        );
+        syncWriter.initAndWait();
+
+        return syncWriter;
+    }
+
+    private static void shutdownWriter(SyncWriter writer) {
+        try {
+            writer.shutdown(10, TimeUnit.SECONDS);
+        } catch (InterruptedException | ExecutionException | TimeoutException e) {
+            LOGGER.warn("Failed to shutdown writer: {}", e.getMessage());
+        }
+    }
+
+    private record PendingUpdate(long id, String status, CompletableFuture<Void> future) {
+    }
+}
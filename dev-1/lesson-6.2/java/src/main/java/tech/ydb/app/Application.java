@@ -1,10 +1,11 @@
 package tech.ydb.app;
 
 import java.io.IOException;
-import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
@@ -15,8 +16,6 @@ import java.util.concurrent.atomic.AtomicLong;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import tech.ydb.common.transaction.TxMode;
-import tech.ydb.core.Result;
-import tech.ydb.core.Status;
 import tech.ydb.core.grpc.GrpcTransport;
 import tech.ydb.query.QueryClient;
 import tech.ydb.query.tools.SessionRetryContext;
@@ -24,6 +23,7 @@ import tech.ydb.table.query.Params;
 import tech.ydb.table.result.ResultSetReader;
 import tech.ydb.table.values.PrimitiveValue;
 import tech.ydb.topic.TopicClient;
+import tech.ydb.topic.description.Codec;
 import tech.ydb.topic.read.SyncReader;
 import tech.ydb.topic.settings.ReaderSettings;
 import tech.ydb.topic.settings.TopicReadSettings;
@@ -41,7 +41,25 @@ public class Application {
     private static final String PATH = "dev-1/lesson-6.2/java/file.txt";
     private static final String CONNECTION_STRING = "grpc://localhost:2136/local";
 
+    // Формат сообщений file_topic, общий для писателя и читателей
+    private static final FileMessageCodec CODEC = FileMessageCodec.BINARY;
+
+    // Сжатие сообщений file_topic, читатель распаковывает сообщения автоматически
+    private static final Codec TOPIC_CODEC = Codec.ZSTD;
+
+    // Число потоков, обрабатывающих партиции топика в параллельном режиме
+    private static final int CONSUMER_THREADS = 5;
+
+    // Наибольшее число сообщений, которые однопоточный читатель применяет одной пачкой
+    private static final int READ_BATCH_SIZE = 1000;
+
+    /**
+     * Запуск с аргументом "parallel" включает параллельное чтение топика по партициям,
+     * без аргументов все сообщения обрабатываются одним потоком.
+     */
     public static void main(String[] args) throws IOException, InterruptedException, ExecutionException, TimeoutException {
+        var parallelMode = args.length > 0 && args[0].equals("parallel");
+
         try (GrpcTransport grpcTransport = GrpcTransport
                 .forConnectionString(CONNECTION_STRING)
                 .withConnectTimeout(Duration.ofSeconds(10))
@@ -61,19 +79,11 @@ public class Application {
                     WriterSettings.newBuilder()
                             .setProducerId("producer-file")
                             .setTopicPath("file_topic")
-                            .build()
-            );
-
-            // Создаем reader для чтения строк из топика
-            var reader = topicClient.createSyncReader(
-                    ReaderSettings.newBuilder()
-                            .setConsumerName("file_consumer")
-                            .setTopics(List.of(TopicReadSettings.newBuilder().setPath("file_topic").build()))
+                            .setCodec(TOPIC_CODEC)
                             .build()
             );
 
             writer.init();
-            reader.init();
 
             String currentDirectory = System.getProperty("user.dir");
             var pathFile = Path.of(currentDirectory, PATH);
@@ -81,7 +91,33 @@ public class Application {
             var lines = Files.readAllLines(pathFile);
 
             // Запускаем фоновое чтение строк из топика
-            var readerJob = CompletableFuture.runAsync(() -> runReadJob(reader, retryCtx));
+            SyncReader reader = null;
+            PartitionedTopicConsumer consumer = null;
+            CompletableFuture<Void> readerJob;
+
+            if (parallelMode) {
+                // Прогресс партиции читается один раз при старте партиционной сессии,
+                // а сообщения применяются пачками с одним обновлением прогресса на пачку
+                var processor = new FileProgressProcessor(retryCtx, CODEC);
+                consumer = new PartitionedTopicConsumer(topicClient, "file_topic", "file_consumer", CONSUMER_THREADS,
+                        processor);
+                consumer.start();
+                readerJob = processor.stopped();
+            } else {
+                // Создаем reader для чтения строк из топика
+                reader = topicClient.createSyncReader(
+                        ReaderSettings.newBuilder()
+                                .setConsumerName("file_consumer")
+                                .setTopics(List.of(TopicReadSettings.newBuilder().setPath("file_topic").build()))
+                                .build()
+                );
+                reader.init();
+
+                var syncReader = reader;
+                var processor = new FileProgressProcessor(retryCtx, CODEC);
+                CompletableFuture.runAsync(() -> runReadJob(syncReader, processor));
+                readerJob = processor.stopped();
+            }
 
             // Получаем номер последней обработанной строки из таблицы прогресса
             var queryReader = queryServiceHelper.executeQuery("""
@@ -115,7 +151,7 @@ public class Application {
                         // так, что сервер сможет правильно пропустить дубли.
                         writer.send(Message.newBuilder()
                                 .setSeqNo(lineNumber.getAndIncrement())
-                                .setData((PATH + ":" + line).getBytes(StandardCharsets.UTF_8))
+                                .setData(CODEC.encode(PATH, line))
                                 .build()
                         );
                         writer.flush();
@@ -136,7 +172,7 @@ public class Application {
 
             writer.send(Message.newBuilder()
                     .setSeqNo(lineNumber.getAndIncrement())
-                    .setData("STOP".getBytes(StandardCharsets.UTF_8))
+                    .setData(CODEC.encodeStop())
                     .build()
             );
             writer.flush();
@@ -145,104 +181,93 @@ public class Application {
             printTableFile(queryServiceHelper);
 
             writer.shutdown(10, TimeUnit.SECONDS);
-            reader.shutdown();
+            if (reader != null) {
+                reader.shutdown();
+            }
+            if (consumer != null) {
+                consumer.close();
+            }
         }
     }
 
-    private static void runReadJob(SyncReader reader, SessionRetryContext retryCtx) {
+    /**
+     * Пример обработки сообщений из топика ровно 1 раз без транзакций, объединяющих операции
+     * с таблицами и топиками, - т.е. то, как это делается в других системах, когда нет готовых интеграций.
+     * <p>
+     * Чтение топика одним потоком. Вместо SELECT и UPSERT на каждое сообщение уже полученные
+     * читателем сообщения забираются пачкой и применяются {@link FileProgressProcessor}:
+     * прогресс партиции хранится в памяти, и на пачку партиции выполняется одна условная транзакция.
+     */
+    private static void runReadJob(SyncReader reader, FileProgressProcessor processor) {
         LOGGER.info("Started read worker!");
 
-        var next = true;
-        for (int i = 0; next; i++) {
+        while (!processor.stopped().isDone()) {
+            List<tech.ydb.topic.read.Message> batch;
             try {
-                var message = reader.receive(10, TimeUnit.SECONDS);
-
-                // Далее идёт пример обработки сообщения из топика ровно 1 раз без использования
-                // транзакций для объединения операции с таблицами и топиками - т.е. то, как это
-                // делается в других системах, когда нет готовых интеграций.
-
-                // В транзакции будет проверяться было ли уже обработано сообщение и если нет, то
-                // обрабатывать и сохранять прогресс. Эти операции должны быть атомарными, чтобы
-                // избежать ситуации, когда одно и тоже сообщение будет обработано несколько раз.
-                final int finalI = i;
-                next = retryCtx.supplyResult(session -> {
-                    var curTx = session.createNewTransaction(TxMode.SERIALIZABLE_RW);
-                    var tx = new TransactionHelper(curTx);
-                    assert message != null;
-                    var partitionId = message.getPartitionSession().getPartitionId();
-
-                    // Проверяем, не обрабатывали ли мы уже это сообщение
-                    var queryReader = tx.executeQuery("""
-                            DECLARE $partition_id AS Int64;
-                            SELECT last_offset FROM file_progress
-                            WHERE partition_id = $partition_id;
-                            """, Params.of("$partition_id", PrimitiveValue.newInt64(partitionId))
-                    );
-
-                    var resultSet = queryReader.getResultSet(0);
-                    var lastOffset = resultSet.next() ? resultSet.getColumn(0).getInt64() : -1;
-
-                    // Если сообщение уже было обработано, пропускаем его
-                    if (lastOffset >= message.getOffset()) {
-                        message.commit().join();
-                        curTx.rollback().join();
-
-                        return CompletableFuture.completedFuture(Result.success(true));
-                    }
+                batch = receiveBatch(reader);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
 
-                    var messageStr = new String(message.getData(), StandardCharsets.UTF_8);
-                    if (messageStr.equals("STOP")) {
-                        LOGGER.info("Stopped read worker!");
+                throw new RuntimeException(e);
+            }
 
-                        return CompletableFuture.completedFuture(Result.success(false));
+            var byPartition = new LinkedHashMap<Long, List<tech.ydb.topic.read.Message>>();
+            for (var message : batch) {
+                byPartition.computeIfAbsent(message.getPartitionSession().getPartitionId(), ignored -> new ArrayList<>())
+                        .add(message);
+            }
+
+            // Пачка повторяется до успеха: уже применённые сообщения processor отбросит по прогрессу,
+            // а пропустить неприменённые нельзя - SyncReader не отдаст их повторно до перезапуска
+            for (var entry : byPartition.entrySet()) {
+                while (true) {
+                    try {
+                        processor.process(entry.getKey(), entry.getValue());
+                        break;
+                    } catch (RuntimeException e) {
+                        LOGGER.error("Failed to process messages of partition {}: {}", entry.getKey(), e.getMessage());
+
+                        sleepBeforeRetry();
                     }
+                }
+            }
 
-                    var messageData = messageStr.split(":");
-                    var name = messageData[0];
-                    var length = messageData[1].length();
+            // Если коммит не дойдёт до сервера, повторно прочитанные сообщения будут отброшены по file_progress
+            CompletableFuture.allOf(batch.stream()
+                    .map(tech.ydb.topic.read.Message::commit)
+                    .toArray(CompletableFuture[]::new)
+            ).exceptionally(th -> {
+                LOGGER.warn("Failed to commit messages: {}", th.getMessage());
 
-                    if (finalI == 0) {
-                        // Сохраняем информацию о строке в таблицу
-                        tx.executeQuery("""
-                                            DECLARE $name AS Text;
-                                            DECLARE $length AS Int64;
-                                            INSERT INTO file(name, length) VALUES ($name, $length);
-                                        """,
-                                Params.of("$name", PrimitiveValue.newText(name), "$length", PrimitiveValue.newInt64(length))
-                        );
-                    } else {
-                        // Обновляем информацию
-                        tx.executeQuery("""
-                                            DECLARE $name AS Text;
-                                            DECLARE $length AS Int64;
-                                            UPDATE file SET length = length + $length WHERE name = $name;
-                                        """,
-                                Params.of("$name", PrimitiveValue.newText(name), "$length", PrimitiveValue.newInt64(length))
-                        );
-                    }
+                return null;
+            }).join();
+        }
+    }
+
+    private static List<tech.ydb.topic.read.Message> receiveBatch(SyncReader reader) throws InterruptedException {
+        var batch = new ArrayList<tech.ydb.topic.read.Message>();
 
-                    // Обновляем прогресс обработки партиции. Если произойдёт сбой после коммита транзакции,
-                    // но до коммита сообщения в топик, то на основе этого прогресса повторная обработка
-                    // сообщения будет пропущена.
-                    tx.executeQueryWithCommit("""
-                                        DECLARE $partition_id AS Int64;
-                                        DECLARE $last_offset AS Int64;
-                                        UPSERT INTO file_progress(partition_id, last_offset) VALUES ($partition_id, $last_offset);
-                                    """,
-                            Params.of(
-                                    "$partition_id", PrimitiveValue.newInt64(partitionId),
-                                    "$last_offset", PrimitiveValue.newInt64(message.getOffset())
-                            )
-                    );
-
-                    message.commit().join();
-
-                    return CompletableFuture.completedFuture(Result.success(true));
-                }).join().getValue();
-
-            } catch (Exception e) {
-                LOGGER.error(e.getMessage());
+        var message = reader.receive(10, TimeUnit.SECONDS);
+        // Кроме первого сообщения забираем только уже полученные читателем, не дожидаясь новых
+        while (message != null) {
+            batch.add(message);
+
+            if (batch.size() >= READ_BATCH_SIZE) {
+                break;
             }
+            message = reader.receive(0, TimeUnit.MILLISECONDS);
+        }
+
+        return batch;
+    }
+
+    private static void sleepBeforeRetry() {
+        try {
+            TimeUnit.SECONDS.sleep(1);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+
+            throw new RuntimeException(e);
         }
     }
 
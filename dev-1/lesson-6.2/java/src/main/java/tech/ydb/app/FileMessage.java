@@ -0,0 +1,15 @@
+package tech.ydb.app;
+
+/**
+ * Содержимое сообщения file_topic: имя файла и длина строки в символах.
+ * Сообщение STOP сигнализирует читателю о конце файла.
+ *
+ * @author Kirill Kurdyukov
+ */
+public record FileMessage(String name, int lineLength) {
+    public static final FileMessage STOP = new FileMessage(null, 0);
+
+    public boolean isStop() {
+        return this == STOP;
+    }
+}
@@ -0,0 +1,91 @@
+package tech.ydb.app;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Замер скорости кодирования и декодирования сообщений file_topic в строковом и двоичном форматах.
+ * Кодирует и декодирует строки file.txt заданное число раз (по умолчанию 2000) после прогрева
+ * и печатает число сообщений в секунду и средний размер сообщения. База данных не нужна.
+ * <p>
+ * Запуск: {@code FileMessageCodecBenchmark [iterations]}
+ *
+ * @author Kirill Kurdyukov
+ */
+public class FileMessageCodecBenchmark {
+    private static final Logger LOGGER = LoggerFactory.getLogger(FileMessageCodecBenchmark.class);
+    private static final String PATH = "dev-1/lesson-6.2/java/file.txt";
+    private static final int WARMUP_ITERATIONS = 200;
+
+    public static void main(String[] args) throws IOException {
+        var iterations = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+        var lines = Files.readAllLines(Path.of(System.getProperty("user.dir"), PATH));
+
+        benchmark("string", FileMessageCodec.STRING, lines, iterations);
+        benchmark("binary", FileMessageCodec.BINARY, lines, iterations);
+    }
+
+    private static void benchmark(String codecName, FileMessageCodec codec, List<String> lines, int iterations) {
+        var encoded = new byte[lines.size()][];
+        for (int i = 0; i < lines.size(); i++) {
+            encoded[i] = codec.encode(PATH, lines.get(i));
+        }
+
+        long totalBytes = 0;
+        for (var data : encoded) {
+            totalBytes += data.length;
+        }
+
+        // Результат накапливается, чтобы JIT не выбросил вычисления
+        long blackhole = 0;
+
+        for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+            blackhole += encodeAll(codec, lines) + decodeAll(codec, encoded);
+        }
+
+        var startNanos = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            blackhole += encodeAll(codec, lines);
+        }
+        var encodeNanos = System.nanoTime() - startNanos;
+
+        startNanos = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            blackhole += decodeAll(codec, encoded);
+        }
+        var decodeNanos = System.nanoTime() - startNanos;
+
+        var messages = (long) iterations * lines.size();
+
+        LOGGER.info("Codec {}: encode {} msg/s, decode {} msg/s, avg message size {} bytes (checksum {})",
+                codecName,
+                Math.round(messages / (encodeNanos / 1_000_000_000.0)),
+                Math.round(messages / (decodeNanos / 1_000_000_000.0)),
+                totalBytes / Math.max(lines.size(), 1),
+                blackhole);
+    }
+
+    private static long encodeAll(FileMessageCodec codec, List<String> lines) {
+        long result = 0;
+
+        for (var line : lines) {
+            result += codec.encode(PATH, line).length;
+        }
+
+        return result;
+    }
+
+    private static long decodeAll(FileMessageCodec codec, byte[][] encoded) {
+        long result = 0;
+
+        for (var data : encoded) {
+            result += codec.decode(data).lineLength();
+        }
+
+        return result;
+    }
+}
@@ -0,0 +1,177 @@
+package tech.ydb.app;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import tech.ydb.common.transaction.TxMode;
+import tech.ydb.query.tools.SessionRetryContext;
+import tech.ydb.table.query.Params;
+import tech.ydb.table.values.ListType;
+import tech.ydb.table.values.PrimitiveType;
+import tech.ydb.table.values.PrimitiveValue;
+import tech.ydb.table.values.StructType;
+import tech.ydb.topic.read.Message;
+
+/**
+ * Обработка сообщений file_topic ровно один раз без транзакций с топиками, пачками.
+ * <p>
+ * Смещение последнего обработанного сообщения партиции читается из file_progress один раз -
+ * при старте партиционной сессии - и дальше хранится в памяти. Уже обработанные сообщения
+ * отбрасываются без обращения к базе, а оставшиеся сообщения пачки применяются одной транзакцией
+ * вместе с одним обновлением прогресса.
+ * <p>
+ * Обновление условное: изменения применяются, только если прогресс в таблице совпадает с тем,
+ * что хранится в памяти. Если партицию успел обработать другой читатель (например, после
+ * перебалансировки), прогресс перечитывается, и пачка повторно фильтруется по новому смещению.
+ * <p>
+ * Используется и с {@link PartitionedTopicConsumer}, и с SyncReader: без событий старта партиционной
+ * сессии прогресс партиции читается при первом её сообщении.
+ *
+ * @author Kirill Kurdyukov
+ */
+public class FileProgressProcessor implements PartitionedTopicConsumer.PartitionProcessor {
+    private static final Logger LOGGER = LoggerFactory.getLogger(FileProgressProcessor.class);
+
+    private static final StructType LENGTH_TYPE = StructType.of(
+            "name", PrimitiveType.Text,
+            "length", PrimitiveType.Int64
+    );
+
+    private final QueryServiceHelper queryServiceHelper;
+    private final FileMessageCodec codec;
+    private final ConcurrentHashMap<Long, Long> lastOffsets = new ConcurrentHashMap<>();
+    private final CompletableFuture<Void> stopped = new CompletableFuture<>();
+
+    public FileProgressProcessor(SessionRetryContext retryCtx, FileMessageCodec codec) {
+        this.queryServiceHelper = new QueryServiceHelper(retryCtx);
+        this.codec = codec;
+    }
+
+    /**
+     * Завершается, когда обработано сообщение STOP.
+     */
+    public CompletableFuture<Void> stopped() {
+        return stopped;
+    }
+
+    @Override
+    public void onPartitionStarted(long partitionId) {
+        lastOffsets.put(partitionId, readLastOffset(partitionId));
+    }
+
+    @Override
+    public void onPartitionStopped(long partitionId) {
+        lastOffsets.remove(partitionId);
+    }
+
+    @Override
+    public void process(long partitionId, List<Message> messages) {
+        var lastOffset = lastOffsets.computeIfAbsent(partitionId, this::readLastOffset);
+
+        while (true) {
+            var lengths = new LinkedHashMap<String, Long>();
+            var batchLastOffset = lastOffset;
+            var stop = false;
+
+            for (var message : messages) {
+                if (message.getOffset() <= lastOffset) {
+                    continue; // сообщение уже обработано
+                }
+
+                batchLastOffset = message.getOffset();
+
+                var fileMessage = codec.decode(message.getData());
+                if (fileMessage.isStop()) {
+                    stop = true;
+                    continue;
+                }
+
+                lengths.merge(fileMessage.name(), (long) fileMessage.lineLength(), Long::sum);
+            }
+
+            if (batchLastOffset == lastOffset) {
+                return;
+            }
+
+            if (apply(partitionId, lastOffset, batchLastOffset, lengths)) {
+                lastOffsets.put(partitionId, batchLastOffset);
+
+                if (stop) {
+                    LOGGER.info("Stopped read worker!");
+                    stopped.complete(null);
+                }
+
+                return;
+            }
+
+            // Прогресс в таблице изменился: партицию обработал кто-то ещё
+            lastOffset = readLastOffset(partitionId);
+            lastOffsets.put(partitionId, lastOffset);
+        }
+    }
+
+    private boolean apply(long partitionId, long expectedOffset, long lastOffset, LinkedHashMap<String, Long> lengths) {
+        var lengthsList = ListType.of(LENGTH_TYPE).newValue(
+                lengths.entrySet().stream().map(entry -> LENGTH_TYPE.newValue(
+                        "name", PrimitiveValue.newText(entry.getKey()),
+                        "length", PrimitiveValue.newInt64(entry.getValue())
+                )).toList()
+        );
+
+        var queryReader = queryServiceHelper.executeQuery("""
+                        DECLARE $partition_id AS Int64;
+                        DECLARE $expected_offset AS Int64;
+                        DECLARE $last_offset AS Int64;
+                        DECLARE $lengths AS List<Struct<name: Text, length: Int64>>;
+
+                        -- изменения применяются, только если прогресс партиции не изменился с момента чтения
+                        $current = (SELECT last_offset FROM file_progress WHERE partition_id = $partition_id);
+                        $applied = COALESCE($current, -1) == $expected_offset;
+
+                        -- именованные выражения вычисляются в момент использования, поэтому результат проверки
+                        -- возвращается до записи в file_progress: после UPSERT $current прочитал бы уже новое смещение
+                        SELECT $applied AS applied;
+
+                        UPSERT INTO file
+                        SELECT l.name AS name, COALESCE(f.length, 0) + l.length AS length
+                        FROM AS_TABLE($lengths) AS l LEFT JOIN file AS f ON l.name = f.name
+                        WHERE $applied;
+
+                        UPSERT INTO file_progress
+                        SELECT partition_id, last_offset
+                        FROM AS_TABLE(AsList(AsStruct($partition_id AS partition_id, $last_offset AS last_offset)))
+                        WHERE $applied;
+                        """,
+                TxMode.SERIALIZABLE_RW,
+                Params.of(
+                        "$partition_id", PrimitiveValue.newInt64(partitionId),
+                        "$expected_offset", PrimitiveValue.newInt64(expectedOffset),
+                        "$last_offset", PrimitiveValue.newInt64(lastOffset),
+                        "$lengths", lengthsList
+                )
+        );
+
+        var resultSet = queryReader.getResultSet(0);
+        resultSet.next();
+
+        return resultSet.getColumn(0).getBool();
+    }
+
+    private long readLastOffset(long partitionId) {
+        var queryReader = queryServiceHelper.executeQuery("""
+                        DECLARE $partition_id AS Int64;
+                        SELECT last_offset FROM file_progress
+                        WHERE partition_id = $partition_id;
+                        """,
+                TxMode.SNAPSHOT_RO,
+                Params.of("$partition_id", PrimitiveValue.newInt64(partitionId))
+        );
+
+        var resultSet = queryReader.getResultSet(0);
+
+        return resultSet.next() ? resultSet.getColumn(0).getInt64() : -1;
+    }
+}
@@ -0,0 +1,189 @@
+package tech.ydb.app;
+
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import tech.ydb.topic.TopicClient;
+import tech.ydb.topic.read.AsyncReader;
+import tech.ydb.topic.read.Message;
+import tech.ydb.topic.read.events.AbstractReadEventHandler;
+import tech.ydb.topic.read.events.DataReceivedEvent;
+import tech.ydb.topic.read.events.PartitionSessionClosedEvent;
+import tech.ydb.topic.read.events.StartPartitionSessionEvent;
+import tech.ydb.topic.read.events.StopPartitionSessionEvent;
+import tech.ydb.topic.settings.ReadEventHandlersSettings;
+import tech.ydb.topic.settings.ReaderSettings;
+import tech.ydb.topic.settings.TopicReadSettings;
+
+/**
+ * Параллельное чтение топика по партициям.
+ * <p>
+ * Читатель асинхронный: события каждой партиционной сессии SDK передаёт обработчику строго
+ * последовательно, следующая пачка сообщений партиции приходит только после обработки предыдущей,
+ * а пачки разных партиций обрабатываются одновременно на пуле из workerThreads потоков.
+ * Так сохраняется порядок внутри партиции, а пропускная способность растёт с числом партиций.
+ * <p>
+ * Когда автомасштабирование добавляет партиции или сервер перераспределяет их между читателями,
+ * приходят события начала и остановки партиционных сессий, о которых сообщается обработчику.
+ * <p>
+ * Если обработчик бросил исключение, пачка повторяется с нарастающей паузой, пока не будет обработана
+ * или пока консьюмер не закрыт. Следующие сообщения партиции не передаются обработчику, а смещения
+ * не фиксируются, пока пачка не обработана, поэтому в обработанных сообщениях партиции не бывает пропусков.
+ * Обработчик должен быть идемпотентным: пачка могла быть частично применена до ошибки.
+ *
+ * @author Kirill Kurdyukov
+ */
+public class PartitionedTopicConsumer implements AutoCloseable {
+    private static final Logger LOGGER = LoggerFactory.getLogger(PartitionedTopicConsumer.class);
+    private static final long MIN_RETRY_DELAY_MILLIS = 100;
+    private static final long MAX_RETRY_DELAY_MILLIS = 5000;
+
+    /**
+     * Обработчик сообщений одной партиции. Вызовы для одной партиции никогда не выполняются одновременно.
+     */
+    public interface PartitionProcessor {
+        default void onPartitionStarted(long partitionId) {
+        }
+
+        void process(long partitionId, List<Message> messages);
+
+        default void onPartitionStopped(long partitionId) {
+        }
+    }
+
+    private final ExecutorService executor;
+    private final AsyncReader reader;
+    private final AtomicBoolean closed = new AtomicBoolean();
+    private final AtomicLong processedMessages = new AtomicLong();
+    private final long startNanos = System.nanoTime();
+
+    public PartitionedTopicConsumer(
+            TopicClient topicClient,
+            String topicPath,
+            String consumerName,
+            int workerThreads,
+            PartitionProcessor processor
+    ) {
+        this.executor = Executors.newFixedThreadPool(workerThreads);
+        this.reader = topicClient.createAsyncReader(
+                ReaderSettings.newBuilder()
+                        .setConsumerName(consumerName)
+                        .setTopics(List.of(TopicReadSettings.newBuilder().setPath(topicPath).build()))
+                        .build(),
+                ReadEventHandlersSettings.newBuilder()
+                        .setExecutor(executor)
+                        .setEventHandler(new Handler(processor))
+                        .build()
+        );
+    }
+
+    public void start() {
+        reader.init().join();
+    }
+
+    @Override
+    public void close() {
+        // Прерываем повторы обработки, иначе shutdown читателя будет ждать их бесконечно
+        closed.set(true);
+
+        reader.shutdown().join();
+        executor.shutdown();
+
+        try {
+            // Дожидаемся завершения уже запущенных вызовов обработчика, чтобы они не пережили клиентов YDB
+            if (!executor.awaitTermination(1, TimeUnit.MINUTES)) {
+                LOGGER.warn("Partition processors did not finish in time");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+
+            throw new RuntimeException(e);
+        }
+
+        var elapsedSeconds = Math.max(System.nanoTime() - startNanos, 1) / 1_000_000_000.0;
+        LOGGER.info("Partitioned consumer processed {} messages ({} messages/s)",
+                processedMessages.get(), Math.round(processedMessages.get() / elapsedSeconds));
+    }
+
+    private class Handler extends AbstractReadEventHandler {
+        private final PartitionProcessor processor;
+
+        private Handler(PartitionProcessor processor) {
+            this.processor = processor;
+        }
+
+        @Override
+        public void onStartPartitionSession(StartPartitionSessionEvent event) {
+            var partitionId = event.getPartitionSession().getPartitionId();
+            LOGGER.info("Started partition session for partition {}", partitionId);
+
+            processor.onPartitionStarted(partitionId);
+            event.confirm();
+        }
+
+        @Override
+        public void onMessages(DataReceivedEvent event) {
+            var partitionId = event.getPartitionSession().getPartitionId();
+
+            processWithRetries(partitionId, event.getMessages());
+            processedMessages.addAndGet(event.getMessages().size());
+
+            event.commit().whenComplete((ignored, th) -> {
+                if (th != null) {
+                    LOGGER.warn("Failed to commit messages of partition {}: {}", partitionId, th.getMessage());
+                }
+            });
+        }
+
+        /**
+         * Пока вызов не вернулся, SDK не передаёт следующие события этой партиции,
+         * поэтому более поздние пачки не могут быть обработаны и зафиксированы раньше упавшей.
+         */
+        private void processWithRetries(long partitionId, List<Message> messages) {
+            var delayMillis = MIN_RETRY_DELAY_MILLIS;
+
+            while (true) {
+                try {
+                    processor.process(partitionId, messages);
+                    return;
+                } catch (RuntimeException e) {
+                    if (closed.get()) {
+                        // Пачка не зафиксирована и будет прочитана повторно после перезапуска
+                        throw e;
+                    }
+
+                    LOGGER.warn("Failed to process messages of partition {}, retry in {} ms: {}",
+                            partitionId, delayMillis, e.getMessage());
+                }
+
+                try {
+                    TimeUnit.MILLISECONDS.sleep(delayMillis);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+
+                    throw new RuntimeException(e);
+                }
+
+                delayMillis = Math.min(delayMillis * 2, MAX_RETRY_DELAY_MILLIS);
+            }
+        }
+
+        @Override
+        public void onStopPartitionSession(StopPartitionSessionEvent event) {
+            LOGGER.info("Stopped partition session for partition {}", event.getPartitionId());
+
+            processor.onPartitionStopped(event.getPartitionId());
+            event.confirm();
+        }
+
+        @Override
+        public void onPartitionSessionClosed(PartitionSessionClosedEvent event) {
+            processor.onPartitionStopped(event.getPartitionSession().getPartitionId());
+        }
+    }
+}
@@ -0,0 +1,166 @@
+package tech.ydb.app;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import tech.ydb.core.grpc.GrpcTransport;
+import tech.ydb.query.QueryClient;
+import tech.ydb.query.tools.SessionRetryContext;
+import tech.ydb.topic.TopicClient;
+import tech.ydb.topic.description.Codec;
+import tech.ydb.topic.settings.WriterSettings;
+import tech.ydb.topic.utils.Encoder;
+import tech.ydb.topic.write.Message;
+import tech.ydb.topic.write.QueueOverflowException;
+
+/**
+ * Сравнение кодеков сжатия топика на сообщениях file_topic.
+ * <p>
+ * Для каждого кодека строки file.txt, закодированные {@link FileMessageCodec#BINARY}, записываются
+ * заданное число раз (по умолчанию 20) в отдельный топик codec_benchmark. Печатается:
+ * <ul>
+ *     <li>объем сообщений после сжатия - сжимается каждое сообщение отдельно, как это делает писатель;</li>
+ *     <li>процессорное время клиента на одно сообщение;</li>
+ *     <li>p50/p99 задержки от отправки сообщения до подтверждения записи сервером.</li>
+ * </ul>
+ * <p>
+ * Запуск: {@code TopicCodecBenchmark [iterations]}
+ *
+ * @author Kirill Kurdyukov
+ */
+public class TopicCodecBenchmark {
+    private static final Logger LOGGER = LoggerFactory.getLogger(TopicCodecBenchmark.class);
+    private static final String CONNECTION_STRING = "grpc://localhost:2136/local";
+    private static final String PATH = "dev-1/lesson-6.2/java/file.txt";
+    private static final String TOPIC = "codec_benchmark";
+    private static final int MAX_IN_FLIGHT = 1000;
+    private static final List<Codec> CODECS = List.of(Codec.RAW, Codec.GZIP, Codec.ZSTD, Codec.LZOP);
+
+    public static void main(String[] args) throws IOException {
+        var iterations = args.length > 0 ? Integer.parseInt(args[0]) : 20;
+        var lines = Files.readAllLines(Path.of(System.getProperty("user.dir"), PATH));
+
+        var messages = new ArrayList<byte[]>();
+        for (int i = 0; i < iterations; i++) {
+            for (var line : lines) {
+                messages.add(FileMessageCodec.BINARY.encode(PATH, line));
+            }
+        }
+
+        try (GrpcTransport grpcTransport = GrpcTransport
+                .forConnectionString(CONNECTION_STRING)
+                .withConnectTimeout(Duration.ofSeconds(10))
+                .build();
+             QueryClient queryClient = QueryClient.newClient(grpcTransport).build();
+             TopicClient topicClient = TopicClient.newClient(grpcTransport).build()
+        ) {
+            var queryServiceHelper = new QueryServiceHelper(SessionRetryContext.create(queryClient).build());
+
+            queryServiceHelper.executeQuery("DROP TOPIC IF EXISTS " + TOPIC + ";");
+            queryServiceHelper.executeQuery("CREATE TOPIC " + TOPIC + ";");
+
+            try {
+                for (var codec : CODECS) {
+                    benchmark(topicClient, codec, messages);
+                }
+            } finally {
+                queryServiceHelper.executeQuery("DROP TOPIC IF EXISTS " + TOPIC + ";");
+            }
+        }
+    }
+
+    private static void benchmark(TopicClient topicClient, Codec codec, List<byte[]> messages) throws IOException {
+        long rawBytes = 0;
+        long wireBytes = 0;
+
+        for (var data : messages) {
+            rawBytes += data.length;
+            wireBytes += Encoder.encode(codec, data).length;
+        }
+
+        var writer = topicClient.createAsyncWriter(
+                WriterSettings.newBuilder()
+                        .setProducerId("producer-codec-benchmark-" + codec)
+                        .setTopicPath(TOPIC)
+                        .setCodec(codec)
+                        .setMaxSendBufferMessagesCount(MAX_IN_FLIGHT)
+                        .build()
+        );
+        writer.init().join();
+
+        var inFlight = new Semaphore(MAX_IN_FLIGHT);
+        var latenciesNanos = new long[messages.size()];
+        var acks = new ArrayList<CompletableFuture<?>>(messages.size());
+
+        var startCpuNanos = processCpuNanos();
+        var startNanos = System.nanoTime();
+
+        for (int i = 0; i < messages.size(); i++) {
+            inFlight.acquireUninterruptibly();
+
+            var index = i;
+            var sendNanos = System.nanoTime();
+
+            try {
+                acks.add(writer.send(Message.newBuilder().setData(messages.get(i)).build()).whenComplete((ack, th) -> {
+                    latenciesNanos[index] = System.nanoTime() - sendNanos;
+                    inFlight.release();
+                }));
+            } catch (QueueOverflowException e) {
+                throw new RuntimeException(e);
+            }
+        }
+
+        CompletableFuture.allOf(acks.toArray(CompletableFuture[]::new)).join();
+
+        var elapsedNanos = System.nanoTime() - startNanos;
+        var cpuNanos = processCpuNanos() - startCpuNanos;
+
+        try {
+            writer.shutdown().get(10, TimeUnit.SECONDS);
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+
+        Arrays.sort(latenciesNanos);
+
+        LOGGER.info("Codec {}: {} messages, {} -> {} bytes ({}%), {} msg/s, cpu {} us/msg, ack p50 {} us, p99 {} us",
+                codec,
+                messages.size(),
+                rawBytes,
+                wireBytes,
+                Math.round(100.0 * wireBytes / Math.max(rawBytes, 1)),
+                Math.round(messages.size() / (elapsedNanos / 1_000_000_000.0)),
+                cpuNanos / 1000 / Math.max(messages.size(), 1),
+                percentile(latenciesNanos, 0.5) / 1000,
+                percentile(latenciesNanos, 0.99) / 1000);
+    }
+
+    private static long processCpuNanos() {
+        var osBean = ManagementFactory.getOperatingSystemMXBean();
+
+        if (osBean instanceof com.sun.management.OperatingSystemMXBean sunOsBean) {
+            return sunOsBean.getProcessCpuTime();
+        }
+
+        return 0;
+    }
+
+    private static long percentile(long[] sorted, double percentile) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+
+        return sorted[Math.min(sorted.length - 1, (int) (sorted.length * percentile))];
+    }
+}
@@ -1,11 +1,12 @@
 package tech.ydb.app;
 
 import java.io.IOException;
-import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.time.Duration;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Set;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
@@ -19,11 +20,17 @@ import tech.ydb.core.Result;
 import tech.ydb.core.Status;
 import tech.ydb.core.grpc.GrpcTransport;
 import tech.ydb.query.QueryClient;
+import tech.ydb.query.tools.QueryReader;
 import tech.ydb.query.tools.SessionRetryContext;
 import tech.ydb.table.query.Params;
 import tech.ydb.table.result.ResultSetReader;
+import tech.ydb.table.values.ListType;
+import tech.ydb.table.values.PrimitiveType;
 import tech.ydb.table.values.PrimitiveValue;
+import tech.ydb.table.values.StructType;
+import tech.ydb.table.values.StructValue;
 import tech.ydb.topic.TopicClient;
+import tech.ydb.topic.description.Codec;
 import tech.ydb.topic.read.SyncReader;
 import tech.ydb.topic.settings.ReaderSettings;
 import tech.ydb.topic.settings.ReceiveSettings;
@@ -43,7 +50,33 @@ public class Application {
     private static final String PATH = "/lesson-6.3/java/file.txt";
     private static final String CONNECTION_STRING = "grpc://localhost:2136/local";
 
+    // Размер пачки в пакетном режиме записи: сколько строк отправлять в одной транзакции.
+    // Файл уже прочитан в память, ждать новых строк не нужно, поэтому пачка ограничена только размером
+    private static final int WRITE_BATCH_SIZE = 1000;
+
+    // Параметры пакетного режима чтения: сколько сообщений и как долго копить в одной транзакции
+    private static final int READ_BATCH_SIZE = 1000;
+    private static final Duration READ_BATCH_LINGER = Duration.ofMillis(100);
+
+    // Число потоков, обрабатывающих партиции топика в параллельном режиме
+    private static final int CONSUMER_THREADS = 5;
+
+    // Формат сообщений file_topic, общий для писателей и читателей
+    private static final FileMessageCodec CODEC = FileMessageCodec.BINARY;
+
+    // Сжатие сообщений file_topic, читатель распаковывает сообщения автоматически
+    private static final Codec TOPIC_CODEC = Codec.ZSTD;
+
+    /**
+     * Запуск с аргументом "batch" включает пакетную транзакционную запись строк файла в топик
+     * и пакетное транзакционное чтение из топика, без аргументов каждая строка пишется
+     * и читается в своей транзакции. Аргумент "parallel" включает параллельное чтение топика по партициям.
+     */
     public static void main(String[] args) throws IOException {
+        var modes = Set.of(args);
+        var batchMode = modes.contains("batch");
+        var parallelMode = modes.contains("parallel");
+
         try (GrpcTransport grpcTransport = GrpcTransport
                 .forConnectionString(CONNECTION_STRING)
                 .withConnectTimeout(Duration.ofSeconds(10))
@@ -57,19 +90,39 @@ public class Application {
             dropSchema(queryServiceHelper);
             createSchema(queryServiceHelper);
 
-            var reader = topicClient.createSyncReader(
-                    ReaderSettings.newBuilder()
-                            .setConsumerName("file_consumer")
-                            .setTopics(List.of(TopicReadSettings.newBuilder().setPath("file_topic").build()))
-                            .build()
-            );
-
-            reader.init();
-
             String currentDirectory = System.getProperty("user.dir");
             var pathFile = Path.of(currentDirectory, PATH);
             var lines = Files.readAllLines(pathFile);
-            var readerJob = CompletableFuture.runAsync(() -> runTransactionReadJob(reader, retryCtx));
+
+            SyncReader reader = null;
+            PartitionedTopicConsumer consumer = null;
+            CompletableFuture<Void> readerJob;
+
+            if (parallelMode) {
+                var stopped = new CompletableFuture<Void>();
+                consumer = new PartitionedTopicConsumer(topicClient, "file_topic", "file_consumer", CONSUMER_THREADS,
+                        (partitionId, messages) -> processPartitionMessages(retryCtx, messages, stopped));
+                consumer.start();
+                readerJob = stopped;
+            } else {
+                reader = topicClient.createSyncReader(
+                        ReaderSettings.newBuilder()
+                                .setConsumerName("file_consumer")
+                                .setTopics(List.of(TopicReadSettings.newBuilder().setPath("file_topic").build()))
+                                .build()
+                );
+
+                reader.init();
+
+                var syncReader = reader;
+                readerJob = CompletableFuture.runAsync(() -> {
+                    if (batchMode) {
+                        runTransactionBatchReadJob(syncReader, retryCtx);
+                    } else {
+                        runTransactionReadJob(syncReader, retryCtx);
+                    }
+                });
+            }
             var queryReader = queryServiceHelper.executeQuery("""
                             DECLARE $name AS Text;
                             SELECT line_num FROM write_file_progress
@@ -86,82 +139,211 @@ public class Application {
                 lineNumberLong = resultSet.getColumn(0).getInt64();
             }
 
-            var lineNumber = new AtomicLong(lineNumberLong);
-            var origLineNumber = new AtomicLong(1);
+            var writeStartNanos = System.nanoTime();
+            long nextLineNumber;
 
-            // Читаем файл построчно и отправляем строки в топик в рамках транзакции
-            lines.forEach(line -> {
-                        if (origLineNumber.getAndIncrement() < lineNumber.get()) {
-                            return;
-                        }
+            if (batchMode) {
+                // STOP отправляется внутри writeFileInBatches тем же писателем, что и строки
+                nextLineNumber = writeFileInBatches(topicClient, retryCtx, pathFile, lines, lineNumberLong);
+            } else {
+                nextLineNumber = writeFilePerLine(topicClient, retryCtx, pathFile, lines, lineNumberLong);
+                sendStopMessage(topicClient, nextLineNumber);
+            }
 
-                        var lineNumberCur = lineNumber.getAndIncrement();
-                        retryCtx.supplyStatus(
-                                session -> {
-                                    // Начинаем интерактивную транзакцию
-                                    var transaction = session.beginTransaction(TxMode.SERIALIZABLE_RW).join().getValue();
-                                    var tx = new TransactionHelper(transaction);
-                                    // При транзакционной записи нужно создавать писателя для каждой транзакции
-                                    // иначе встретиться со сложными для отладки проблемами в виде внезапной
-                                    // остановки писателя и необходимости его пересоздания.
-
-                                    // Транзакций обычно много, поэтому producerID нужно указывать явно - чтобы
-                                    // не перегружать кластер их большим количеством.
-                                    // Важно чтобы producerID был уникальным в каждый момент времени,
-                                    // т.к. при параллельном подключении двух писателей с одинаковым ProducerID
-                                    // один из них получит ошибку и будет закрыт.
-                                    var writer = topicClient.createSyncWriter(
-                                            WriterSettings.newBuilder()
-                                                    .setProducerId("producer-file")
-                                                    .setTopicPath("file_topic")
-                                                    .build()
-                                    );
-                                    writer.initAndWait();
+            logWriteSpeed(batchMode, nextLineNumber - lineNumberLong, writeStartNanos);
+
+
+            readerJob.join();
+            if (reader != null) {
+                reader.shutdown();
+            }
+            if (consumer != null) {
+                consumer.close();
+            }
+
+            printTableFile(queryServiceHelper);
+        }
+    }
+
+    /**
+     * Запись строк файла в топик по одной строке в транзакции.
+     * Возвращает номер строки, следующей за последней записанной.
+     */
+    private static long writeFilePerLine(
+            TopicClient topicClient,
+            SessionRetryContext retryCtx,
+            Path pathFile,
+            List<String> lines,
+            long fromLineNumber
+    ) {
+        var lineNumber = new AtomicLong(fromLineNumber);
+        var origLineNumber = new AtomicLong(1);
+
+        // Читаем файл построчно и отправляем строки в топик в рамках транзакции
+        lines.forEach(line -> {
+                    if (origLineNumber.getAndIncrement() < lineNumber.get()) {
+                        return;
+                    }
+
+                    var lineNumberCur = lineNumber.getAndIncrement();
+                    retryCtx.supplyStatus(
+                            session -> {
+                                // Начинаем интерактивную транзакцию
+                                var transaction = session.beginTransaction(TxMode.SERIALIZABLE_RW).join().getValue();
+                                var tx = new TransactionHelper(transaction);
+                                // При транзакционной записи нужно создавать писателя для каждой транзакции
+                                // иначе встретиться со сложными для отладки проблемами в виде внезапной
+                                // остановки писателя и необходимости его пересоздания.
+
+                                // Транзакций обычно много, поэтому producerID нужно указывать явно - чтобы
+                                // не перегружать кластер их большим количеством.
+                                // Важно чтобы producerID был уникальным в каждый момент времени,
+                                // т.к. при параллельном подключении двух писателей с одинаковым ProducerID
+                                // один из них получит ошибку и будет закрыт.
+                                var writer = topicClient.createSyncWriter(
+                                        WriterSettings.newBuilder()
+                                                .setProducerId("producer-file")
+                                                .setTopicPath("file_topic")
+                                                .setCodec(TOPIC_CODEC)
+                                                .build()
+                                );
+                                writer.initAndWait();
+
+                                // Отправляем сообщение в топик в рамках транзакции
+                                writer.send(
+                                        Message.newBuilder()
+                                                .setSeqNo(lineNumberCur)
+                                                .setData(CODEC.encode(PATH, line))
+                                                .build(),
+                                        SendSettings.newBuilder().setTransaction(transaction).build()
+                                );
+                                writer.flush();
+
+                                tx.executeQuery("""
+                                                DECLARE $name AS Text;
+                                                DECLARE $line_num AS Int64;
+                                                UPSERT INTO write_file_progress(name, line_num) VALUES ($name, $line_num);
+                                                """,
+                                        Params.of("$name", PrimitiveValue.newText(pathFile.toString()),
+                                                "$line_num", PrimitiveValue.newInt64(lineNumberCur))
+                                );
+
+                                // Фиксируем транзакцию.
+                                // В этот момент транзакция будет завершена и гарантируется атомарность операций
+                                // и с топиками и с таблицами, т.е. можно работать естественным для БД образом даже
+                                // если в операциях теперь участвует очередь сообщений (топик).
+                                transaction.commit().join();
+
+                                try {
+                                    writer.shutdown(10, TimeUnit.SECONDS);
+                                } catch (InterruptedException | ExecutionException | TimeoutException e) {
+                                    throw new RuntimeException(e);
+                                }
 
-                                    // Отправляем сообщение в топик в рамках транзакции
+                                return CompletableFuture.completedFuture(Status.SUCCESS);
+                            }
+                    ).join().expectSuccess();
+                }
+        );
+
+        return lineNumber.get();
+    }
+
+    /**
+     * Пакетная запись строк файла в топик.
+     * Строки группируются по WRITE_BATCH_SIZE штук, и каждая пачка записывается одной транзакцией
+     * вместе с одной строкой прогресса.
+     * Писатель не создаётся заново для каждой транзакции, а берётся из пула по слоту продюсера.
+     * Гарантия exactly-once сохраняется: сообщения и прогресс фиксируются атомарно, а повторно отправленные
+     * после сбоя сообщения отбрасываются сервером по SeqNo постоянного ProducerID.
+     * После всех пачек тем же писателем отправляется сообщение STOP.
+     * Возвращает номер строки, следующей за последней записанной.
+     */
+    private static long writeFileInBatches(
+            TopicClient topicClient,
+            SessionRetryContext retryCtx,
+            Path pathFile,
+            List<String> lines,
+            long fromLineNumber
+    ) {
+        // Пачки пишутся последовательно, поэтому достаточно одного слота
+        var slot = 0;
+
+        try (var writerPool = new TopicWriterPool(topicClient, "file_topic", "producer-file-batch", TOPIC_CODEC)) {
+            var lineNumber = fromLineNumber;
+
+            while (lineNumber <= lines.size()) {
+                var batchStart = lineNumber;
+                var batch = new ArrayList<String>();
+
+                while (lineNumber <= lines.size() && batch.size() < WRITE_BATCH_SIZE) {
+                    batch.add(lines.get((int) lineNumber - 1));
+                    lineNumber++;
+                }
+
+                var batchEnd = lineNumber - 1;
+
+                retryCtx.supplyStatus(
+                        session -> {
+                            var transaction = session.beginTransaction(TxMode.SERIALIZABLE_RW).join().getValue();
+                            var tx = new TransactionHelper(transaction);
+                            var writer = writerPool.acquire(slot);
+
+                            try {
+                                var sendSettings = SendSettings.newBuilder().setTransaction(transaction).build();
+
+                                for (int i = 0; i < batch.size(); i++) {
                                     writer.send(
                                             Message.newBuilder()
-                                                    .setSeqNo(lineNumberCur)
-                                                    .setData((PATH + ":" + line).getBytes(StandardCharsets.UTF_8))
+                                                    .setSeqNo(batchStart + i)
+                                                    .setData(CODEC.encode(PATH, batch.get(i)))
                                                     .build(),
-                                            SendSettings.newBuilder().setTransaction(transaction).build()
-                                    );
-                                    writer.flush();
-
-                                    tx.executeQuery("""
-                                                    DECLARE $name AS Text;
-                                                    DECLARE $line_num AS Int64;
-                                                    UPSERT INTO write_file_progress(name, line_num) VALUES ($name, $line_num);
-                                                    """,
-                                            Params.of("$name", PrimitiveValue.newText(pathFile.toString()),
-                                                    "$line_num", PrimitiveValue.newInt64(lineNumberCur))
+                                            sendSettings
                                     );
-
-                                    // Фиксируем транзакцию.
-                                    // В этот момент транзакция будет завершена и гарантируется атомарность операций
-                                    // и с топиками и с таблицами, т.е. можно работать естественным для БД образом даже
-                                    // если в операциях теперь участвует очередь сообщений (топик).
-                                    transaction.commit().join();
-
-                                    try {
-                                        writer.shutdown(10, TimeUnit.SECONDS);
-                                    } catch (InterruptedException | ExecutionException | TimeoutException e) {
-                                        throw new RuntimeException(e);
-                                    }
-
-                                    return CompletableFuture.completedFuture(Status.SUCCESS);
                                 }
-                        ).join().expectSuccess();
-                    }
+                                writer.flush();
+
+                                // Одна строка прогресса на всю пачку, фиксируется вместе с сообщениями
+                                tx.executeQueryWithCommit("""
+                                                DECLARE $name AS Text;
+                                                DECLARE $line_num AS Int64;
+                                                UPSERT INTO write_file_progress(name, line_num) VALUES ($name, $line_num);
+                                                """,
+                                        Params.of("$name", PrimitiveValue.newText(pathFile.toString()),
+                                                "$line_num", PrimitiveValue.newInt64(batchEnd))
+                                );
+                            } catch (RuntimeException e) {
+                                // после неудачной транзакции писатель может быть остановлен - пересоздадим его
+                                writerPool.invalidate(slot);
+
+                                throw e;
+                            }
+
+                            return CompletableFuture.completedFuture(Status.SUCCESS);
+                        }
+                ).join().expectSuccess();
+            }
+
+            // Партиция выбирается по ProducerID, поэтому STOP отправляется тем же писателем слота:
+            // он попадёт в ту же партицию после всех строк, и читатель не остановится раньше времени
+            var writer = writerPool.acquire(slot);
+            writer.send(
+                    Message.newBuilder()
+                            .setSeqNo(lineNumber)
+                            .setData(CODEC.encodeStop())
+                            .build()
             );
-            sendStopMessage(topicClient, lineNumber.getAndIncrement());
+            writer.flush();
 
+            return lineNumber;
+        }
+    }
 
-            readerJob.join();
-            reader.shutdown();
+    private static void logWriteSpeed(boolean batchMode, long writtenLines, long startNanos) {
+        var elapsedSeconds = Math.max(System.nanoTime() - startNanos, 1) / 1_000_000_000.0;
 
-            printTableFile(queryServiceHelper);
-        }
+        LOGGER.info("Written {} lines in {} mode: {} lines/s",
+                writtenLines, batchMode ? "batch" : "per-line", Math.round(writtenLines / elapsedSeconds));
     }
 
     private static void sendStopMessage(TopicClient topicClient, long lastSeqNo) {
@@ -169,13 +351,14 @@ public class Application {
                 WriterSettings.newBuilder()
                         .setProducerId("producer-file")
                         .setTopicPath("file_topic")
+                        .setCodec(TOPIC_CODEC)
                         .build()
         );
         writer.initAndWait();
         writer.send(
                 Message.newBuilder()
                         .setSeqNo(lastSeqNo)
-                        .setData(("STOP").getBytes(StandardCharsets.UTF_8))
+                        .setData(CODEC.encodeStop())
                         .build()
         );
         writer.flush();
@@ -216,16 +399,15 @@ public class Application {
                         return CompletableFuture.completedFuture(Result.success(true));
                     }
 
-                    var messageStr = new String(message.getData(), StandardCharsets.UTF_8);
-                    if (messageStr.equals("STOP")) {
+                    var fileMessage = CODEC.decode(message.getData());
+                    if (fileMessage.isStop()) {
                         LOGGER.info("Stopped read worker!");
 
                         return CompletableFuture.completedFuture(Result.success(false));
                     }
 
-                    var messageData = new String(message.getData(), StandardCharsets.UTF_8).split(":");
-                    var name = messageData[0];
-                    var length = messageData[1].length();
+                    var name = fileMessage.name();
+                    var length = fileMessage.lineLength();
                     var lineNumber = message.getSeqNo();
 
                     tx.executeQuery("""
@@ -254,6 +436,149 @@ public class Application {
         }
     }
 
+    /**
+     * Пакетное транзакционное чтение: в одну транзакцию читается до READ_BATCH_SIZE сообщений,
+     * но не дольше READ_BATCH_LINGER, и все они записываются в таблицу одним запросом.
+     * Смещения прочитанных сообщений фиксируются в топике вместе с коммитом строк таблицы,
+     * поэтому после перезапуска ни одно сообщение не будет потеряно или применено дважды.
+     */
+    private static void runTransactionBatchReadJob(SyncReader reader, SessionRetryContext retryCtx) {
+        LOGGER.info("Started batch read worker!");
+
+        var rowType = StructType.of(
+                "name", PrimitiveType.Text,
+                "line", PrimitiveType.Int64,
+                "length", PrimitiveType.Int64
+        );
+
+        var next = true;
+        while (next) {
+            try {
+                next = retryCtx.supplyResult(session -> {
+                    var transaction = session.beginTransaction(TxMode.SERIALIZABLE_RW).join().getValue();
+                    var tx = new TransactionHelper(transaction);
+
+                    var rows = new ArrayList<StructValue>();
+                    var stopped = false;
+                    var deadline = System.nanoTime() + READ_BATCH_LINGER.toNanos();
+
+                    while (rows.size() < READ_BATCH_SIZE) {
+                        var remaining = deadline - System.nanoTime();
+                        if (remaining <= 0) {
+                            break;
+                        }
+
+                        tech.ydb.topic.read.Message message;
+                        try {
+                            // Все сообщения пачки читаются в рамках одной транзакции
+                            message = reader.receive(ReceiveSettings.newBuilder()
+                                    .setTransaction(transaction)
+                                    .setTimeout(remaining, TimeUnit.NANOSECONDS)
+                                    .build()
+                            );
+                        } catch (InterruptedException e) {
+                            throw new RuntimeException(e);
+                        }
+
+                        if (message == null) {
+                            break;
+                        }
+
+                        var fileMessage = CODEC.decode(message.getData());
+                        if (fileMessage.isStop()) {
+                            stopped = true;
+                            break;
+                        }
+
+                        rows.add(rowType.newValue(
+                                "name", PrimitiveValue.newText(fileMessage.name()),
+                                "line", PrimitiveValue.newInt64(message.getSeqNo()),
+                                "length", PrimitiveValue.newInt64(fileMessage.lineLength())
+                        ));
+                    }
+
+                    if (rows.isEmpty()) {
+                        if (stopped) {
+                            LOGGER.info("Stopped batch read worker!");
+
+                            return CompletableFuture.completedFuture(Result.success(false));
+                        }
+
+                        transaction.rollback().join();
+                        return CompletableFuture.completedFuture(Result.success(true));
+                    }
+
+                    // Один запрос на всю пачку, коммит фиксирует и строки, и смещения прочитанных сообщений
+                    tx.executeQueryWithCommit("""
+                                    DECLARE $rows AS List<Struct<name: Text, line: Int64, length: Int64>>;
+                                    UPSERT INTO file SELECT * FROM AS_TABLE($rows);
+                                    """,
+                            Params.of("$rows", ListType.of(rowType).newValue(rows))
+                    );
+
+                    if (stopped) {
+                        LOGGER.info("Stopped batch read worker!");
+                    }
+
+                    return CompletableFuture.completedFuture(Result.success(!stopped));
+                }).join().getValue();
+            } catch (Exception e) {
+                LOGGER.error(e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Обработка пачки сообщений одной партиции в параллельном режиме.
+     * Асинхронный читатель не поддерживает чтение в транзакции, поэтому смещения фиксируются
+     * после записи строк. Повторная обработка после сбоя безопасна: строка таблицы file
+     * однозначно определяется именем файла и номером строки, и UPSERT просто перезапишет её теми же данными.
+     */
+    private static void processPartitionMessages(
+            SessionRetryContext retryCtx,
+            List<tech.ydb.topic.read.Message> messages,
+            CompletableFuture<Void> stopped
+    ) {
+        var rowType = StructType.of(
+                "name", PrimitiveType.Text,
+                "line", PrimitiveType.Int64,
+                "length", PrimitiveType.Int64
+        );
+
+        var rows = new ArrayList<StructValue>();
+        var stop = false;
+        for (var message : messages) {
+            var fileMessage = CODEC.decode(message.getData());
+            if (fileMessage.isStop()) {
+                stop = true;
+                continue;
+            }
+
+            rows.add(rowType.newValue(
+                    "name", PrimitiveValue.newText(fileMessage.name()),
+                    "line", PrimitiveValue.newInt64(message.getSeqNo()),
+                    "length", PrimitiveValue.newInt64(fileMessage.lineLength())
+            ));
+        }
+
+        if (!rows.isEmpty()) {
+            retryCtx.supplyResult(session -> QueryReader.readFrom(session.createQuery("""
+                            DECLARE $rows AS List<Struct<name: Text, line: Int64, length: Int64>>;
+                            UPSERT INTO file SELECT * FROM AS_TABLE($rows);
+                            """,
+                    TxMode.SERIALIZABLE_RW,
+                    Params.of("$rows", ListType.of(rowType).newValue(rows))
+            ))).join().getValue();
+        }
+
+        // Сигнал остановки подаётся только после записи строк пачки, иначе main
+        // может напечатать таблицу и закрыть клиентов раньше, чем завершится UPSERT
+        if (stop) {
+            LOGGER.info("Stopped read worker!");
+            stopped.complete(null);
+        }
+    }
+
     private static void printTableFile(QueryServiceHelper queryServiceHelper) {
         var queryReader = queryServiceHelper.executeQuery(
                 "SELECT name, line, length FROM file;", TxMode.SERIALIZABLE_RW, Params.empty()
@@ -0,0 +1,77 @@
+package tech.ydb.app;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Двоичный формат сообщений file_topic:
+ * <pre>
+ * [тип: 1 байт][длина имени: 2 байта][имя: UTF-8][строка: UTF-8 до конца сообщения]
+ * </pre>
+ * Сообщение STOP состоит из одного байта типа.
+ * <p>
+ * При декодировании строка файла не копируется и не превращается в String: её длина в символах
+ * считается прямо по байтам сообщения. Каждый символ UTF-8 начинается с байта, отличного от 10xxxxxx,
+ * а четырехбайтовые последовательности в Java-строке занимают два символа (суррогатную пару),
+ * поэтому результат совпадает с String.length() для той же строки.
+ *
+ * @author Kirill Kurdyukov
+ */
+public class BinaryFileMessageCodec implements FileMessageCodec {
+    private static final byte TYPE_LINE = 1;
+    private static final byte TYPE_STOP = 2;
+    private static final int HEADER_SIZE = 3;
+
+    @Override
+    public byte[] encode(String name, String line) {
+        var nameBytes = name.getBytes(StandardCharsets.UTF_8);
+        var lineBytes = line.getBytes(StandardCharsets.UTF_8);
+
+        if (nameBytes.length > 0xFFFF) {
+            throw new IllegalArgumentException("File name is too long: " + nameBytes.length + " bytes");
+        }
+
+        var data = new byte[HEADER_SIZE + nameBytes.length + lineBytes.length];
+        data[0] = TYPE_LINE;
+        data[1] = (byte) (nameBytes.length >>> 8);
+        data[2] = (byte) nameBytes.length;
+        System.arraycopy(nameBytes, 0, data, HEADER_SIZE, nameBytes.length);
+        System.arraycopy(lineBytes, 0, data, HEADER_SIZE + nameBytes.length, lineBytes.length);
+
+        return data;
+    }
+
+    @Override
+    public byte[] encodeStop() {
+        return new byte[]{TYPE_STOP};
+    }
+
+    @Override
+    public FileMessage decode(byte[] data) {
+        if (data[0] == TYPE_STOP) {
+            return FileMessage.STOP;
+        }
+
+        if (data[0] != TYPE_LINE) {
+            throw new IllegalArgumentException("Unknown message type: " + data[0]);
+        }
+
+        var nameLength = ((data[1] & 0xFF) << 8) | (data[2] & 0xFF);
+        var name = new String(data, HEADER_SIZE, nameLength, StandardCharsets.UTF_8);
+
+        return new FileMessage(name, utf16Length(data, HEADER_SIZE + nameLength, data.length));
+    }
+
+    private static int utf16Length(byte[] data, int from, int to) {
+        var length = 0;
+
+        for (int i = from; i < to; i++) {
+            var b = data[i] & 0xFF;
+
+            if ((b & 0xC0) != 0x80) {
+                length += b >= 0xF0 ? 2 : 1;
+            }
+        }
+
+        return length;
+    }
+}
@@ -0,0 +1,24 @@
+package tech.ydb.app;
+
+/**
+ * Формат сообщений file_topic. Писатель и читатель топика должны использовать один и тот же кодек.
+ *
+ * @author Kirill Kurdyukov
+ */
+public interface FileMessageCodec {
+    /**
+     * Исходный строковый формат "имя:строка"
+     */
+    FileMessageCodec STRING = new StringFileMessageCodec();
+
+    /**
+     * Компактный двоичный формат с длиной имени файла в заголовке
+     */
+    FileMessageCodec BINARY = new BinaryFileMessageCodec();
+
+    byte[] encode(String name, String line);
+
+    byte[] encodeStop();
+
+    FileMessage decode(byte[] data);
+}
@@ -0,0 +1,38 @@
+package tech.ydb.app;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Строковый формат "имя:строка" и отдельное сообщение "STOP".
+ * <p>
+ * Сообщение целиком декодируется в строку. Имя файла отделяется по первому двоеточию,
+ * поэтому двоеточия внутри строки файла не ломают разбор, а в имени файла недопустимы.
+ *
+ * @author Kirill Kurdyukov
+ */
+public class StringFileMessageCodec implements FileMessageCodec {
+    private static final String STOP = "STOP";
+
+    @Override
+    public byte[] encode(String name, String line) {
+        return (name + ":" + line).getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public byte[] encodeStop() {
+        return STOP.getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public FileMessage decode(byte[] data) {
+        var messageStr = new String(data, StandardCharsets.UTF_8);
+
+        if (messageStr.equals(STOP)) {
+            return FileMessage.STOP;
+        }
+
+        var separator = messageStr.indexOf(':');
+
+        return new FileMessage(messageStr.substring(0, separator), messageStr.length() - separator - 1);
+    }
+}
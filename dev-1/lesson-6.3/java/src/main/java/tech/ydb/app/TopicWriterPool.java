@@ -0,0 +1,80 @@
+package tech.ydb.app;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import tech.ydb.topic.TopicClient;
+import tech.ydb.topic.description.Codec;
+import tech.ydb.topic.settings.WriterSettings;
+import tech.ydb.topic.write.SyncWriter;
+
+/**
+ * Пул писателей в топик: по одному писателю на слот продюсера.
+ * <p>
+ * Создание писателя и ожидание его инициализации стоит сетевого обмена, поэтому писатель слота
+ * переиспользуется между транзакциями. ProducerID слота постоянен ("prefix-slot"), благодаря чему
+ * сервер отбрасывает повторно отправленные после перезапуска сообщения с уже записанными SeqNo.
+ * Если транзакция с участием писателя завершилась ошибкой, писатель может оказаться остановлен,
+ * поэтому такой писатель нужно выбросить через {@link #invalidate(int)} - при следующем обращении
+ * к слоту будет создан новый.
+ *
+ * @author Kirill Kurdyukov
+ */
+public class TopicWriterPool implements AutoCloseable {
+    private static final Logger LOGGER = LoggerFactory.getLogger(TopicWriterPool.class);
+
+    private final TopicClient topicClient;
+    private final String topicPath;
+    private final String producerIdPrefix;
+    private final Codec codec;
+    private final ConcurrentHashMap<Integer, SyncWriter> writers = new ConcurrentHashMap<>();
+
+    public TopicWriterPool(TopicClient topicClient, String topicPath, String producerIdPrefix, Codec codec) {
+        this.topicClient = topicClient;
+        this.topicPath = topicPath;
+        this.producerIdPrefix = producerIdPrefix;
+        this.codec = codec;
+    }
+
+    public SyncWriter acquire(int slot) {
+        return writers.computeIfAbsent(slot, this::createWriter);
+    }
+
+    public void invalidate(int slot) {
+        var writer = writers.remove(slot);
+
+        if (writer != null) {
+            shutdown(writer);
+        }
+    }
+
+    @Override
+    public void close() {
+        writers.values().forEach(TopicWriterPool::shutdown);
+        writers.clear();
+    }
+
+    private SyncWriter createWriter(int slot) {
+        var writer = topicClient.createSyncWriter(
+                WriterSettings.newBuilder()
+                        .setProducerId(producerIdPrefix + "-" + slot)
+                        .setTopicPath(topicPath)
+                        .setCodec(codec)
+                        .build()
+        );
+        writer.initAndWait();
+
+        return writer;
+    }
+
+    private static void shutdown(SyncWriter writer) {
+        try {
+            writer.shutdown(10, TimeUnit.SECONDS);
+        } catch (InterruptedException | ExecutionException | TimeoutException e) {
+            LOGGER.warn("Failed to shutdown writer: {}", e.getMessage());
+        }
+    }
+}
@@ -16,7 +16,7 @@ public class TransactionHelper {
     }
 
     public QueryReader executeQuery(String yql, Params params) {
-        return QueryReader.readFrom(transaction.createQueryWithCommit(yql, params)).join().getValue();
+        return QueryReader.readFrom(transaction.createQuery(yql, params)).join().getValue();
     }
 
     public QueryReader executeQueryWithCommit(String yql, Params params) {
@@ -1,13 +1,9 @@
 package tech.ydb.app;
 
-import com.opencsv.CSVReader;
-import com.opencsv.exceptions.CsvException;
-import java.io.IOException;
-import java.nio.file.Files;
 import java.nio.file.Path;
 import java.time.Duration;
-import java.util.ArrayList;
-import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import tech.ydb.core.grpc.GrpcTransport;
@@ -23,6 +19,7 @@ public class Application {
     private static final Logger LOGGER = LoggerFactory.getLogger(Application.class);
     private static final String PATH = "/lesson-8.2/java/title_author.csv";
     private static final String CONNECTION_STRING = "grpc://localhost:2136/local";
+    private static final int PAGE_SIZE = 50;
 
     public static void main(String[] args) {
         try (GrpcTransport grpcTransport = GrpcTransport
@@ -42,34 +39,27 @@ public class Application {
             schemaYdbRepository.dropSchema();
             schemaYdbRepository.createSchema();
 
-            var titleAuthorList = new ArrayList<TitleAuthor>();
-            try (CSVReader reader = new CSVReader(Files.newBufferedReader(
-                    Path.of(System.getProperty("user.dir"), PATH)))
-            ) {
-                List<String[]> allRows = reader.readAll();
+            // Потоковый импорт CSV через Key-Value API: разбор файла, сборка пачек
+            // и массовое добавление данных выполняются одновременно
+            new CsvImporter(nativeApiYdbRepository, "/local/issues")
+                    .importFile(Path.of(System.getProperty("user.dir"), PATH), null);
 
-                for (int i = 1; i < allRows.size(); i++) {
-                    var title = allRows.get(i)[0];
-                    var author = allRows.get(i)[1];
-
-                    titleAuthorList.add(new TitleAuthor(title, author));
-                }
-            } catch (IOException | CsvException e) {
-                LOGGER.error(e.getMessage());
-
-                throw new RuntimeException(e);
-            }
-
-            // Массовое добавление данных через Key-Value API
-            nativeApiYdbRepository.bulkUpsert("/local/issues", titleAuthorList);
-
-            Issue lastIssue = null;
+            var lastIssue = new AtomicReference<Issue>();
             LOGGER.info("Print all issues: ");
-            for (var issue : issueYdbRepository.findAll()) {
+            // Потоковое чтение: в памяти одновременно находится не больше одной части результата
+            issueYdbRepository.findAll(issue -> {
                 printIssue(issue);
 
-                lastIssue = issue;
-            }
+                lastIssue.set(issue);
+            });
+
+            // Постраничное чтение: следующая страница продолжается после ключа последней строки предыдущей
+            schemaYdbRepository.createAuthorIndex();
+            printPages(pageToken -> issueYdbRepository.findAllPage(PAGE_SIZE, pageToken), "All issues");
+            printPages(
+                    pageToken -> issueYdbRepository.findByAuthorPage(lastIssue.get().author(), PAGE_SIZE, pageToken),
+                    "Issues of " + lastIssue.get().author()
+            );
 
             // Чтение всех данных через Key-Value API
             LOGGER.info("ReadTable: ");
@@ -77,15 +67,34 @@ public class Application {
                 printIssue(issue);
             }
 
+            // Параллельное чтение всех данных через Key-Value API
+            LOGGER.info("ReadTable in parallel: ");
+            nativeApiYdbRepository.readTableParallel("/local/issues", 4, Application::printIssue);
+
             // Чтение данных по ключу через Key-Value API
             LOGGER.info("ReadRows: ");
-            assert lastIssue != null;
-            for (var issue : nativeApiYdbRepository.readRows("/local/issues", lastIssue.id())) {
+            assert lastIssue.get() != null;
+            for (var issue : nativeApiYdbRepository.readRows("/local/issues", lastIssue.get().id())) {
                 printIssue(issue);
             }
+
+            // Статистика запросов: время компиляции и попадания в кэш планов
+            YqlStatement.logStats();
         }
     }
 
+    private static void printPages(Function<String, IssuePage> pageReader, String name) {
+        String pageToken = null;
+        var pageNumber = 0;
+
+        do {
+            var page = pageReader.apply(pageToken);
+            LOGGER.info("{}, page {}: {} issues", name, ++pageNumber, page.issues().size());
+
+            pageToken = page.nextPageToken();
+        } while (pageToken != null);
+    }
+
     private static void printIssue(Issue issue) {
         LOGGER.info("Issue: {}", issue);
     }
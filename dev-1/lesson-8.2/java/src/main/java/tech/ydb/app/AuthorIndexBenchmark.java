@@ -0,0 +1,117 @@
+package tech.ydb.app;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import tech.ydb.core.grpc.GrpcTransport;
+import tech.ydb.query.QueryClient;
+import tech.ydb.query.tools.SessionRetryContext;
+
+/**
+ * Сравнение чтения заголовков тикетов автора двумя способами:
+ * <ul>
+ *     <li>через authorIndex - индекс находит id, а заголовки читаются из основной таблицы;</li>
+ *     <li>через покрывающий authorTitleIndex - все данные берутся из индекса.</li>
+ * </ul>
+ * Для каждого способа печатаются p50 и p99 задержки чтения всех заголовков случайного автора.
+ * <p>
+ * Запуск: {@code AuthorIndexBenchmark [reads per mode] [issues] [authors]}
+ *
+ * @author Kirill Kurdyukov
+ */
+public class AuthorIndexBenchmark {
+    private static final Logger LOGGER = LoggerFactory.getLogger(AuthorIndexBenchmark.class);
+    private static final String CONNECTION_STRING = "grpc://localhost:2136/local";
+    private static final int SAVE_BATCH_SIZE = 1000;
+
+    public static void main(String[] args) {
+        var reads = args.length > 0 ? Integer.parseInt(args[0]) : 500;
+        var issuesCount = args.length > 1 ? Integer.parseInt(args[1]) : 100_000;
+        var authorsCount = args.length > 2 ? Integer.parseInt(args[2]) : 100;
+
+        try (GrpcTransport grpcTransport = GrpcTransport
+                .forConnectionString(CONNECTION_STRING)
+                .withConnectTimeout(Duration.ofSeconds(10))
+                .build();
+             QueryClient queryClient = QueryClient.newClient(grpcTransport).build()
+        ) {
+            var retryCtx = SessionRetryContext.create(queryClient).build();
+
+            var schemaYdbRepository = new SchemaYdbRepository(retryCtx);
+            var issueYdbRepository = new IssueYdbRepository(retryCtx);
+
+            schemaYdbRepository.dropSchema();
+            schemaYdbRepository.createSchema();
+
+            var titleAuthors = new ArrayList<TitleAuthor>();
+            for (int i = 0; i < issuesCount; i++) {
+                titleAuthors.add(new TitleAuthor("Ticket " + i, "Author " + i % authorsCount));
+
+                if (titleAuthors.size() == SAVE_BATCH_SIZE) {
+                    issueYdbRepository.saveAll(titleAuthors);
+                    titleAuthors.clear();
+                }
+            }
+            if (!titleAuthors.isEmpty()) {
+                issueYdbRepository.saveAll(titleAuthors);
+            }
+
+            schemaYdbRepository.createAuthorIndex();
+            schemaYdbRepository.createAuthorTitleIndex();
+
+            // Прогрев: компиляция запросов и кэши сессий не должны попасть в замеры
+            run("warm-up main table", reads / 10, authorsCount,
+                    (author, consumer) -> issueYdbRepository.findByAuthor(author, ReadConsistency.SNAPSHOT,
+                            issue -> consumer.accept(new IssueTitle(issue.id(), issue.title()))));
+            run("warm-up index-only", reads / 10, authorsCount, issueYdbRepository::findTitlesByAuthor);
+
+            run("authorIndex + main table", reads, authorsCount,
+                    (author, consumer) -> issueYdbRepository.findByAuthor(author, ReadConsistency.SNAPSHOT,
+                            issue -> consumer.accept(new IssueTitle(issue.id(), issue.title()))));
+            run("authorTitleIndex (index-only)", reads, authorsCount, issueYdbRepository::findTitlesByAuthor);
+
+            YqlStatement.logStats();
+        }
+    }
+
+    private static void run(String name, int reads, int authorsCount, TitleReader titleReader) {
+        var latencies = new ArrayList<Long>(reads);
+        var rows = new AtomicLong();
+
+        for (int i = 0; i < reads; i++) {
+            var author = "Author " + ThreadLocalRandom.current().nextInt(authorsCount);
+
+            var start = System.nanoTime();
+            titleReader.read(author, issueTitle -> rows.incrementAndGet());
+            latencies.add(System.nanoTime() - start);
+        }
+
+        Collections.sort(latencies);
+
+        LOGGER.info("{}: {} reads, {} rows, p50 = {} us, p99 = {} us",
+                name,
+                latencies.size(),
+                rows.get(),
+                percentile(latencies, 0.50) / 1000,
+                percentile(latencies, 0.99) / 1000
+        );
+    }
+
+    private static long percentile(List<Long> sorted, double p) {
+        if (sorted.isEmpty()) {
+            return 0;
+        }
+
+        return sorted.get(Math.min(sorted.size() - 1, (int) Math.ceil(p * sorted.size()) - 1));
+    }
+
+    private interface TitleReader {
+        void read(String author, Consumer<IssueTitle> consumer);
+    }
+}
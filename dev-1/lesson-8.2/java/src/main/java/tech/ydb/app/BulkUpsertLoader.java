@@ -0,0 +1,231 @@
+package tech.ydb.app;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.LongConsumer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Загрузчик больших объёмов данных через BulkUpsert.
+ * <p>
+ * Входной поток строк разбивается на пачки, ограниченные и по числу строк, и по размеру в байтах,
+ * чтобы один запрос не упирался в ограничение на размер gRPC-сообщения.
+ * Пачки отправляются параллельно, но одновременно в работе находится не больше maxInFlight запросов:
+ * метод add() блокируется, пока не освободится слот. Каждая пачка повторяется независимо от остальных.
+ * <p>
+ * Если строки снабжены позицией во входных данных (например, смещением в файле), загрузчик отслеживает
+ * позицию, до которой все данные гарантированно записаны, см. {@link #committedPosition()}.
+ * Экземпляр рассчитан на одного пишущего клиента: add() и close() вызываются из одного потока.
+ *
+ * @author Kirill Kurdyukov
+ */
+public class BulkUpsertLoader implements AutoCloseable {
+    private static final Logger LOGGER = LoggerFactory.getLogger(BulkUpsertLoader.class);
+
+    public static final int DEFAULT_MAX_BATCH_ROWS = 10_000;
+    public static final long DEFAULT_MAX_BATCH_BYTES = 8L * 1024 * 1024;
+    public static final int DEFAULT_MAX_IN_FLIGHT = 4;
+
+    // Оценка служебных байт на строку: id и created_at, а также заголовки полей protobuf
+    private static final int ROW_OVERHEAD_BYTES = 32;
+
+    private final KeyValueApiYdbRepository repository;
+    private final String tableName;
+    private final int maxBatchRows;
+    private final long maxBatchBytes;
+    private final int maxInFlight;
+    private final Semaphore inFlight;
+
+    private final AtomicLong uploadedRows = new AtomicLong();
+    private final AtomicLong uploadedBytes = new AtomicLong();
+    private final AtomicReference<Throwable> error = new AtomicReference<>();
+    private final long startNanos = System.nanoTime();
+
+    // Пачки, отправленные на запись, в порядке отправки: номер пачки -> позиция её последней строки.
+    // Пачки завершаются в произвольном порядке, а зафиксированной считается позиция,
+    // до которой записаны все пачки без пропусков.
+    private final TreeMap<Long, Long> pendingBatches = new TreeMap<>();
+    private final TreeMap<Long, Long> completedBatches = new TreeMap<>();
+    private volatile long committedPosition = -1;
+    private LongConsumer commitListener = position -> {
+    };
+
+    private List<IssueRow> batch = new ArrayList<>();
+    private long batchBytes = 0;
+    private long batchPosition = -1;
+    private long nextBatchSeqNo = 0;
+
+    public BulkUpsertLoader(KeyValueApiYdbRepository repository, String tableName) {
+        this(repository, tableName, DEFAULT_MAX_BATCH_ROWS, DEFAULT_MAX_BATCH_BYTES, DEFAULT_MAX_IN_FLIGHT);
+    }
+
+    public BulkUpsertLoader(
+            KeyValueApiYdbRepository repository,
+            String tableName,
+            int maxBatchRows,
+            long maxBatchBytes,
+            int maxInFlight
+    ) {
+        if (maxBatchRows <= 0 || maxBatchBytes <= 0 || maxInFlight <= 0) {
+            throw new IllegalArgumentException("Batch limits and in-flight count must be positive");
+        }
+
+        this.repository = repository;
+        this.tableName = tableName;
+        this.maxBatchRows = maxBatchRows;
+        this.maxBatchBytes = maxBatchBytes;
+        this.maxInFlight = maxInFlight;
+        this.inFlight = new Semaphore(maxInFlight);
+    }
+
+    /**
+     * Слушатель вызывается каждый раз, когда сдвигается позиция, до которой все данные записаны.
+     */
+    public BulkUpsertLoader onCommit(LongConsumer commitListener) {
+        this.commitListener = commitListener;
+
+        return this;
+    }
+
+    /**
+     * Добавляет тикет со случайным id: повторная загрузка тех же данных создаст новые тикеты.
+     */
+    public void add(TitleAuthor titleAuthor) {
+        add(new IssueRow(ThreadLocalRandom.current().nextLong(), titleAuthor), -1);
+    }
+
+    /**
+     * Добавляет строку вместе с её позицией во входных данных (позиция сразу после строки).
+     */
+    public void add(IssueRow row, long position) {
+        checkError();
+
+        var rowBytes = estimateBytes(row.titleAuthor());
+        if (!batch.isEmpty() && batchBytes + rowBytes > maxBatchBytes) {
+            flush();
+        }
+
+        batch.add(row);
+        batchBytes += rowBytes;
+        batchPosition = Math.max(batchPosition, position);
+
+        if (batch.size() >= maxBatchRows) {
+            flush();
+        }
+    }
+
+    /**
+     * Отправляет накопленную пачку, не дожидаясь её записи.
+     */
+    public void flush() {
+        if (batch.isEmpty()) {
+            return;
+        }
+
+        var sendingBatch = batch;
+        var sendingBytes = batchBytes;
+        var seqNo = nextBatchSeqNo++;
+        batch = new ArrayList<>();
+        batchBytes = 0;
+
+        synchronized (pendingBatches) {
+            pendingBatches.put(seqNo, batchPosition);
+        }
+
+        inFlight.acquireUninterruptibly();
+        repository.bulkUpsertAsync(tableName, sendingBatch).whenComplete((status, th) -> {
+            try {
+                if (th != null) {
+                    error.compareAndSet(null, th);
+                } else if (!status.isSuccess()) {
+                    error.compareAndSet(null, new RuntimeException("Failed bulk upsert batch: " + status));
+                } else {
+                    uploadedRows.addAndGet(sendingBatch.size());
+                    uploadedBytes.addAndGet(sendingBytes);
+                    completeBatch(seqNo);
+                }
+            } finally {
+                inFlight.release();
+            }
+        });
+    }
+
+    /**
+     * Отправляет остаток данных, дожидается завершения всех запросов и печатает итоговую скорость загрузки.
+     */
+    @Override
+    public void close() {
+        flush();
+
+        inFlight.acquireUninterruptibly(maxInFlight);
+        inFlight.release(maxInFlight);
+
+        var elapsedSeconds = Math.max(System.nanoTime() - startNanos, 1) / 1_000_000_000.0;
+        LOGGER.info("Bulk upsert into {}: {} rows, {} bytes in {} s ({} rows/s, {} bytes/s)",
+                tableName,
+                uploadedRows.get(),
+                uploadedBytes.get(),
+                String.format("%.3f", elapsedSeconds),
+                Math.round(uploadedRows.get() / elapsedSeconds),
+                Math.round(uploadedBytes.get() / elapsedSeconds)
+        );
+
+        checkError();
+    }
+
+    /**
+     * Позиция, до которой все добавленные строки записаны в таблицу, или -1, если таких строк ещё нет.
+     */
+    public long committedPosition() {
+        return committedPosition;
+    }
+
+    public long uploadedRows() {
+        return uploadedRows.get();
+    }
+
+    public long uploadedBytes() {
+        return uploadedBytes.get();
+    }
+
+    private void completeBatch(long seqNo) {
+        synchronized (pendingBatches) {
+            completedBatches.put(seqNo, pendingBatches.get(seqNo));
+
+            var advanced = false;
+            while (!pendingBatches.isEmpty() && completedBatches.containsKey(pendingBatches.firstKey())) {
+                var position = completedBatches.remove(pendingBatches.firstKey());
+                pendingBatches.pollFirstEntry();
+
+                if (position > committedPosition) {
+                    committedPosition = position;
+                    advanced = true;
+                }
+            }
+
+            if (advanced) {
+                commitListener.accept(committedPosition);
+            }
+        }
+    }
+
+    private void checkError() {
+        var th = error.get();
+        if (th != null) {
+            throw new RuntimeException("Bulk upsert into " + tableName + " failed", th);
+        }
+    }
+
+    private static long estimateBytes(TitleAuthor titleAuthor) {
+        return titleAuthor.title().getBytes(StandardCharsets.UTF_8).length
+                + titleAuthor.author().getBytes(StandardCharsets.UTF_8).length
+                + ROW_OVERHEAD_BYTES;
+    }
+}
@@ -0,0 +1,285 @@
+package tech.ydb.app;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import tech.ydb.topic.TopicClient;
+import tech.ydb.topic.description.Consumer;
+import tech.ydb.topic.read.SyncReader;
+import tech.ydb.topic.settings.AlterTopicSettings;
+import tech.ydb.topic.settings.ReaderSettings;
+import tech.ydb.topic.settings.TopicReadSettings;
+
+/**
+ * Кэш тикетов перед {@link IssueYdbRepository#findByIds(List)}.
+ * <p>
+ * Кэш ограничен по числу записей (вытесняются давно не читавшиеся) и по времени жизни записи.
+ * Актуальность поддерживается чтением changefeed-топика issues/updates: любое изменение или удаление
+ * тикета удаляет его из кэша, и следующее чтение загрузит свежую версию из таблицы.
+ * Таким образом кэш отстаёт от таблицы не больше, чем на задержку доставки changefeed.
+ * <p>
+ * Каждый экземпляр кэша должен получить все изменения, поэтому он читает changefeed собственным читателем
+ * consumerName, уникальным для экземпляра и постоянным между его перезапусками (например, из конфигурации).
+ * Общий читатель разделил бы партиции между экземплярами, и каждый видел бы только часть инвалидаций.
+ * Если читателя ещё нет, он добавляется в топик с текущей позиции; после перезапуска экземпляр
+ * продолжает с закоммиченного смещения, так что брошенные читатели в топике не накапливаются.
+ *
+ * @author Kirill Kurdyukov
+ */
+public class CachedIssueRepository implements AutoCloseable {
+    private static final Logger LOGGER = LoggerFactory.getLogger(CachedIssueRepository.class);
+
+    private static final String TOPIC_PATH = "issues/updates";
+
+    private final IssueYdbRepository issueYdbRepository;
+    private final long ttlNanos;
+    private final LinkedHashMap<Long, CacheEntry> cache;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong invalidations = new AtomicLong();
+
+    // Номер последней инвалидации. Тикет, прочитанный из таблицы, не кладётся в кэш,
+    // если он сам был инвалидирован после начала запроса, иначе в кэше может остаться старая версия
+    private long sequence = 0;
+
+    // Номер последней инвалидации каждого тикета в порядке возрастания номеров. Нужны только номера
+    // новее самого старого незавершённого чтения из таблицы, более старые удаляются
+    private final LinkedHashMap<Long, Long> invalidatedAt = new LinkedHashMap<>();
+
+    // Номера начала незавершённых чтений из таблицы и число таких чтений
+    private final Map<Long, Integer> loadsInFlight = new HashMap<>();
+
+    private final SyncReader reader;
+    private final Thread invalidationWorker;
+    private volatile boolean running = true;
+
+    public CachedIssueRepository(
+            IssueYdbRepository issueYdbRepository,
+            TopicClient topicClient,
+            String consumerName,
+            int maxSize,
+            Duration ttl
+    ) {
+        this.issueYdbRepository = issueYdbRepository;
+        this.ttlNanos = ttl.toNanos();
+        this.cache = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, CacheEntry> eldest) {
+                return size() > maxSize;
+            }
+        };
+
+        addConsumerIfAbsent(topicClient, consumerName);
+
+        this.reader = topicClient.createSyncReader(
+                ReaderSettings.newBuilder()
+                        .setConsumerName(consumerName)
+                        .setTopics(
+                                List.of(TopicReadSettings.newBuilder().setPath(TOPIC_PATH).build())
+                        )
+                        .build()
+        );
+        reader.init();
+
+        this.invalidationWorker = new Thread(this::readChangefeed, "issue-cache-invalidation");
+        invalidationWorker.setDaemon(true);
+        invalidationWorker.start();
+    }
+
+    public List<Issue> findByIds(List<Long> ids) {
+        var result = new ArrayList<Issue>();
+        var missing = new ArrayList<Long>();
+        long startSequence;
+
+        synchronized (cache) {
+            startSequence = sequence;
+            var now = System.nanoTime();
+
+            for (var id : ids) {
+                var entry = cache.get(id);
+
+                if (entry != null && now - entry.loadedAt() < ttlNanos) {
+                    result.add(entry.issue());
+                } else {
+                    if (entry != null) {
+                        cache.remove(id);
+                    }
+                    missing.add(id);
+                }
+            }
+
+            if (!missing.isEmpty()) {
+                loadsInFlight.merge(startSequence, 1, Integer::sum);
+            }
+        }
+
+        hits.addAndGet(result.size());
+        misses.addAndGet(missing.size());
+
+        if (missing.isEmpty()) {
+            return result;
+        }
+
+        List<Issue> loaded;
+        try {
+            loaded = issueYdbRepository.findByIds(missing);
+        } catch (RuntimeException e) {
+            synchronized (cache) {
+                finishLoad(startSequence);
+            }
+
+            throw e;
+        }
+        result.addAll(loaded);
+
+        // Заполнение и снятие отметки о чтении выполняются под одной блокировкой,
+        // иначе номера инвалидаций этого чтения могут быть удалены до проверки
+        synchronized (cache) {
+            var now = System.nanoTime();
+            for (var issue : loaded) {
+                if (invalidatedAt.getOrDefault(issue.id(), startSequence) <= startSequence) {
+                    cache.put(issue.id(), new CacheEntry(issue, now));
+                }
+            }
+
+            finishLoad(startSequence);
+        }
+
+        return result;
+    }
+
+    public void invalidate(long id) {
+        synchronized (cache) {
+            cache.remove(id);
+
+            // Пока нет незавершённых чтений, номер инвалидации никому не понадобится
+            if (!loadsInFlight.isEmpty()) {
+                invalidatedAt.remove(id);
+                invalidatedAt.put(id, ++sequence);
+            }
+        }
+
+        invalidations.incrementAndGet();
+    }
+
+    public long hits() {
+        return hits.get();
+    }
+
+    public long misses() {
+        return misses.get();
+    }
+
+    public long invalidations() {
+        return invalidations.get();
+    }
+
+    public int size() {
+        synchronized (cache) {
+            return cache.size();
+        }
+    }
+
+    @Override
+    public void close() {
+        running = false;
+
+        try {
+            invalidationWorker.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        reader.shutdown();
+
+        LOGGER.info("Issue cache stats: hits = {}, misses = {}, invalidations = {}",
+                hits.get(), misses.get(), invalidations.get());
+    }
+
+    private static void addConsumerIfAbsent(TopicClient topicClient, String consumerName) {
+        var description = topicClient.describeTopic(TOPIC_PATH).join().getValue();
+        var exists = description.getConsumers().stream().anyMatch(consumer -> consumer.getName().equals(consumerName));
+
+        if (!exists) {
+            // Изменения, сделанные до первого старта, кэшу не нужны: он ещё пуст
+            topicClient.alterTopic(TOPIC_PATH, AlterTopicSettings.newBuilder()
+                    .addAddConsumer(Consumer.newBuilder().setName(consumerName).setReadFrom(Instant.now()).build())
+                    .build()
+            ).join().expectSuccess("Failed add consumer " + consumerName);
+        }
+    }
+
+    private void readChangefeed() {
+        while (running) {
+            try {
+                var message = reader.receive(1, TimeUnit.SECONDS);
+
+                if (message == null) {
+                    continue;
+                }
+
+                var id = parseKey(message.getData());
+                if (id != null) {
+                    invalidate(id);
+                }
+
+                message.commit();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+
+                return;
+            } catch (Exception e) {
+                LOGGER.warn("Failed to process changefeed message", e);
+            }
+        }
+    }
+
+    /**
+     * Снимает отметку о чтении из таблицы и удаляет номера инвалидаций,
+     * которые не новее начала ни одного незавершённого чтения. Вызывается под блокировкой cache.
+     */
+    private void finishLoad(long startSequence) {
+        loadsInFlight.computeIfPresent(startSequence, (ignored, count) -> count > 1 ? count - 1 : null);
+
+        var oldestLoad = loadsInFlight.keySet().stream().mapToLong(Long::longValue).min().orElse(Long.MAX_VALUE);
+        var iterator = invalidatedAt.values().iterator();
+
+        while (iterator.hasNext() && iterator.next() <= oldestLoad) {
+            iterator.remove();
+        }
+    }
+
+    /**
+     * Извлекает id тикета из поля "key":[id] записи changefeed.
+     * Возвращает null для служебных сообщений без ключа (например, resolved timestamps).
+     */
+    static Long parseKey(byte[] data) {
+        var json = new String(data, StandardCharsets.UTF_8);
+        var keyStart = json.indexOf("\"key\":[");
+
+        if (keyStart < 0) {
+            return null;
+        }
+
+        var from = keyStart + "\"key\":[".length();
+        var to = from;
+        while (to < json.length() && (json.charAt(to) == '-' || Character.isDigit(json.charAt(to)))) {
+            to++;
+        }
+
+        return Long.parseLong(json.substring(from, to));
+    }
+
+    private record CacheEntry(Issue issue, long loadedAt) {
+    }
+}
@@ -0,0 +1,124 @@
+package tech.ydb.app;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import tech.ydb.core.grpc.GrpcTransport;
+import tech.ydb.query.QueryClient;
+import tech.ydb.query.tools.SessionRetryContext;
+import tech.ydb.topic.TopicClient;
+
+/**
+ * Непрерывная обработка changefeed issues/updates.
+ * Работает, пока процесс не будет остановлен (Ctrl+C или SIGTERM), после чего
+ * дообрабатывает полученные изменения и завершается.
+ * <p>
+ * Каждый обработчик читает changefeed своим читателем (consumer), поэтому прогресс у них независимый:
+ * <ul>
+ *     <li>test - печать изменений в лог;</li>
+ *     <li>counts - поддержка счётчиков тикетов по статусам и авторам ({@link IssueCountsProjector});</li>
+ *     <li>search - поддержка индекса заголовков для поиска ({@link TitleIndexProjector}).</li>
+ * </ul>
+ * Схему создает {@link Application}, этот процесс её не пересоздает.
+ * <p>
+ * Запуск: {@code ChangefeedApplication [поисковый запрос]}. Раз в SEARCH_INTERVAL процесс ищет
+ * тикеты по заголовку через {@link IssueYdbRepository#searchByTitle(String)} поверх индекса,
+ * который поддерживает search, и печатает найденные тикеты.
+ *
+ * @author Kirill Kurdyukov
+ */
+public class ChangefeedApplication {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ChangefeedApplication.class);
+    private static final String CONNECTION_STRING = "grpc://localhost:2136/local";
+
+    // Число потоков, обрабатывающих партиции changefeed, на каждого читателя
+    private static final int WORKER_THREADS = 4;
+
+    private static final Path TITLE_INDEX_SNAPSHOT = Path.of("title_index.snapshot");
+    private static final long TITLE_INDEX_SNAPSHOT_EVERY_CHANGES = 10_000;
+
+    private static final Duration SEARCH_INTERVAL = Duration.ofSeconds(10);
+    private static final int SEARCH_PRINT_LIMIT = 10;
+
+    public static void main(String[] args) throws InterruptedException {
+        try (GrpcTransport grpcTransport = GrpcTransport
+                .forConnectionString(CONNECTION_STRING)
+                .withConnectTimeout(Duration.ofSeconds(10))
+                .build();
+             QueryClient queryClient = QueryClient.newClient(grpcTransport).build();
+             TopicClient topicClient = TopicClient.newClient(grpcTransport).build()
+        ) {
+            var query = args.length > 0 ? args[0] : "Ticket";
+
+            var retryCtx = SessionRetryContext.create(queryClient).build();
+            var titleIndex = new TitleSearchIndex();
+            var titleIndexProjector = new TitleIndexProjector(
+                    retryCtx, titleIndex, TITLE_INDEX_SNAPSHOT, TITLE_INDEX_SNAPSHOT_EVERY_CHANGES
+            );
+            // Репозиторий ищет по тому же индексу, который обновляет titleIndexProjector
+            var issueYdbRepository = new IssueYdbRepository(retryCtx, titleIndex);
+
+            var workers = List.of(
+                    new ReaderChangefeedWorker(topicClient, "test", WORKER_THREADS,
+                            (partitionId, changes) -> changes.forEach(change -> logChange(partitionId, change))),
+                    new ReaderChangefeedWorker(topicClient, IssueCountsProjector.CONSUMER_NAME, WORKER_THREADS,
+                            new IssueCountsProjector(retryCtx)),
+                    new ReaderChangefeedWorker(topicClient, TitleIndexProjector.CONSUMER_NAME, WORKER_THREADS,
+                            titleIndexProjector)
+            );
+
+            // После остановки читателей сохраняем индекс, чтобы следующий запуск продолжил с этого места
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                workers.forEach(ReaderChangefeedWorker::shutdown);
+                titleIndexProjector.saveSnapshot();
+            }, "changefeed-shutdown"));
+
+            for (var worker : workers) {
+                worker.start();
+            }
+
+            var searchScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                var thread = new Thread(runnable, "title-search");
+                thread.setDaemon(true);
+
+                return thread;
+            });
+            searchScheduler.scheduleWithFixedDelay(
+                    () -> logSearch(issueYdbRepository, query),
+                    SEARCH_INTERVAL.toNanos(), SEARCH_INTERVAL.toNanos(), TimeUnit.NANOSECONDS
+            );
+
+            for (var worker : workers) {
+                worker.awaitTermination();
+            }
+            searchScheduler.shutdownNow();
+        }
+    }
+
+    private static void logSearch(IssueYdbRepository issueYdbRepository, String query) {
+        try {
+            var ids = issueYdbRepository.searchByTitle(query);
+            LOGGER.info("Search \"{}\": {} issues", query, ids.size());
+
+            for (var issue : issueYdbRepository.findByIds(ids.subList(0, Math.min(ids.size(), SEARCH_PRINT_LIMIT)))) {
+                LOGGER.info("Found issue {}: {}", issue.id(), issue.title());
+            }
+        } catch (RuntimeException e) {
+            LOGGER.warn("Failed to search \"{}\": {}", query, e.getMessage());
+        }
+    }
+
+    private static void logChange(long partitionId, IssueChange change) {
+        if (change.isInsert()) {
+            LOGGER.info("[{}] Inserted issue {}: {}", partitionId, change.id(), change.newImage());
+        } else if (change.isDelete()) {
+            LOGGER.info("[{}] Deleted issue {}: {}", partitionId, change.id(), change.oldImage());
+        } else {
+            LOGGER.info("[{}] Updated issue {}: {} -> {}", partitionId, change.id(), change.oldImage(), change.newImage());
+        }
+    }
+}
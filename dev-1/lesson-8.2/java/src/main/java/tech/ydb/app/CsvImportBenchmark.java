@@ -0,0 +1,72 @@
+package tech.ydb.app;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import tech.ydb.core.grpc.GrpcTransport;
+import tech.ydb.query.QueryClient;
+import tech.ydb.query.tools.SessionRetryContext;
+import tech.ydb.table.TableClient;
+
+/**
+ * Замер сквозной скорости потокового импорта CSV.
+ * Генерирует CSV-файл с заданным числом строк (по умолчанию 1 000 000), загружает его
+ * через {@link CsvImporter} в чистую таблицу issues и печатает скорость в строках в секунду.
+ * <p>
+ * Запуск: {@code CsvImportBenchmark [rows]}
+ *
+ * @author Kirill Kurdyukov
+ */
+public class CsvImportBenchmark {
+    private static final Logger LOGGER = LoggerFactory.getLogger(CsvImportBenchmark.class);
+    private static final String CONNECTION_STRING = "grpc://localhost:2136/local";
+
+    public static void main(String[] args) throws IOException {
+        var rows = args.length > 0 ? Long.parseLong(args[0]) : 1_000_000L;
+        var csvFile = generateCsv(rows);
+
+        try (GrpcTransport grpcTransport = GrpcTransport
+                .forConnectionString(CONNECTION_STRING)
+                .withConnectTimeout(Duration.ofSeconds(10))
+                .build();
+             TableClient tableClient = TableClient.newClient(grpcTransport).build();
+             QueryClient queryClient = QueryClient.newClient(grpcTransport).build()
+        ) {
+            var retryCtx = SessionRetryContext.create(queryClient).build();
+            var retryTableCtx = tech.ydb.table.SessionRetryContext.create(tableClient).build();
+
+            var schemaYdbRepository = new SchemaYdbRepository(retryCtx);
+            schemaYdbRepository.dropSchema();
+            schemaYdbRepository.createSchema();
+
+            var importer = new CsvImporter(new KeyValueApiYdbRepository(retryTableCtx), "/local/issues");
+
+            var startNanos = System.nanoTime();
+            var imported = importer.importFile(csvFile, null);
+            var elapsedSeconds = (System.nanoTime() - startNanos) / 1_000_000_000.0;
+
+            LOGGER.info("CSV import benchmark: {} rows, {} bytes, {} rows/s",
+                    imported, Files.size(csvFile), Math.round(imported / elapsedSeconds));
+        } finally {
+            Files.deleteIfExists(csvFile);
+        }
+    }
+
+    private static Path generateCsv(long rows) throws IOException {
+        var csvFile = Files.createTempFile("title_author", ".csv");
+
+        try (BufferedWriter writer = Files.newBufferedWriter(csvFile)) {
+            writer.write("title, author\n");
+
+            for (long i = 0; i < rows; i++) {
+                writer.write("Ticket title number " + i + ", author" + (i % 1000) + "\n");
+            }
+        }
+
+        return csvFile;
+    }
+}
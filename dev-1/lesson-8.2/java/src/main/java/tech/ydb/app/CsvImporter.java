@@ -0,0 +1,306 @@
+package tech.ydb.app;
+
+import com.opencsv.CSVParser;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicReference;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Потоковый импорт CSV-файла с тикетами (title, author) в таблицу через BulkUpsert.
+ * <p>
+ * Импорт состоит из трёх одновременно работающих стадий:
+ * 1. отдельный поток разбирает файл построчно и складывает строки в ограниченную очередь;
+ * 2. вызывающий поток забирает строки из очереди и собирает из них пачки;
+ * 3. пачки параллельно записываются через {@link BulkUpsertLoader}.
+ * Все буферы ограничены, поэтому потребление памяти не зависит от размера файла.
+ * <p>
+ * Если передан файл контрольной точки, в него записывается смещение в байтах, до которого
+ * все строки уже записаны в таблицу. При повторном запуске чтение продолжается с этого смещения.
+ * Строки, записанные после последней контрольной точки, при перезапуске будут загружены повторно,
+ * но под теми же id, см. {@link #rowId(long, long)}, поэтому повтор перезапишет их, не создавая дубликатов.
+ * Каждая запись CSV должна занимать одну строку файла.
+ *
+ * @author Kirill Kurdyukov
+ */
+public class CsvImporter {
+    private static final Logger LOGGER = LoggerFactory.getLogger(CsvImporter.class);
+
+    public static final int DEFAULT_QUEUE_CAPACITY = 10_000;
+
+    // Маркер конца файла для очереди разобранных строк
+    private static final CsvRow END_OF_FILE = new CsvRow(null, -1);
+
+    private final KeyValueApiYdbRepository repository;
+    private final String tableName;
+    private final int queueCapacity;
+
+    public CsvImporter(KeyValueApiYdbRepository repository, String tableName) {
+        this(repository, tableName, DEFAULT_QUEUE_CAPACITY);
+    }
+
+    public CsvImporter(KeyValueApiYdbRepository repository, String tableName, int queueCapacity) {
+        this.repository = repository;
+        this.tableName = tableName;
+        this.queueCapacity = queueCapacity;
+    }
+
+    /**
+     * Импортирует файл целиком и возвращает количество загруженных строк.
+     *
+     * @param csvFile        CSV-файл, первая строка которого - заголовок
+     * @param checkpointFile файл контрольной точки или null, если продолжение после сбоя не нужно
+     */
+    public long importFile(Path csvFile, Path checkpointFile) {
+        var startOffset = readCheckpoint(checkpointFile);
+        var rows = new ArrayBlockingQueue<CsvRow>(queueCapacity);
+        var parseError = new AtomicReference<Throwable>();
+
+        LOGGER.info("Import {} into {} from offset {}", csvFile, tableName, startOffset);
+
+        var parser = new Thread(() -> {
+            try {
+                parse(csvFile, startOffset, rows);
+            } catch (Throwable e) {
+                parseError.set(e);
+            } finally {
+                // маркер отправляется и после ошибки разбора, иначе загрузка ждала бы следующей строки вечно,
+                // а саму ошибку вызывающий поток пробросит, получив маркер
+                put(rows, END_OF_FILE);
+            }
+        }, "csv-parser");
+        parser.setDaemon(true);
+
+        var startNanos = System.nanoTime();
+        long imported = 0;
+
+        try (var loader = new BulkUpsertLoader(repository, tableName)) {
+            if (checkpointFile != null) {
+                loader.onCommit(offset -> writeCheckpoint(checkpointFile, offset));
+            }
+
+            parser.start();
+
+            while (true) {
+                var row = take(rows);
+                if (row == END_OF_FILE) {
+                    break;
+                }
+
+                loader.add(row.issueRow(), row.endOffset());
+                imported++;
+            }
+        } finally {
+            parser.interrupt();
+        }
+
+        if (parseError.get() != null) {
+            throw new RuntimeException("Failed parse " + csvFile, parseError.get());
+        }
+
+        var elapsedSeconds = Math.max(System.nanoTime() - startNanos, 1) / 1_000_000_000.0;
+        LOGGER.info("Imported {} rows from {} in {} s ({} rows/s)",
+                imported, csvFile, String.format("%.3f", elapsedSeconds), Math.round(imported / elapsedSeconds));
+
+        return imported;
+    }
+
+    private static void parse(Path csvFile, long startOffset, BlockingQueue<CsvRow> rows) throws IOException {
+        var csvParser = new CSVParser();
+        var fileKey = fileKey(csvFile);
+
+        try (var channel = FileChannel.open(csvFile, StandardOpenOption.READ)) {
+            channel.position(startOffset);
+
+            var reader = new LineReader(channel);
+            var offset = startOffset;
+
+            // заголовок пропускаем только при чтении файла с начала
+            var skipHeader = startOffset == 0;
+
+            while (true) {
+                var lineOffset = offset;
+                var text = reader.readLine();
+                if (text == null) {
+                    break;
+                }
+                offset += reader.lastLineBytes();
+
+                if (text.endsWith("\r")) {
+                    text = text.substring(0, text.length() - 1);
+                }
+
+                if (skipHeader) {
+                    skipHeader = false;
+                    continue;
+                }
+                if (text.isEmpty()) {
+                    continue;
+                }
+
+                String[] fields;
+                try {
+                    fields = csvParser.parseLine(text);
+                } catch (IOException e) {
+                    throw new IOException("Malformed CSV line at offset " + lineOffset + " of " + csvFile, e);
+                }
+                if (fields.length < 2) {
+                    throw new IOException("Expected title and author at offset " + lineOffset + " of " + csvFile
+                            + ", got " + fields.length + " field(s)");
+                }
+
+                var titleAuthor = new TitleAuthor(fields[0], fields[1]);
+                put(rows, new CsvRow(new IssueRow(rowId(fileKey, lineOffset), titleAuthor), offset));
+            }
+        }
+    }
+
+    /**
+     * id строки зависит только от имени файла и смещения строки в нём, поэтому строки, повторно
+     * загруженные после продолжения с контрольной точки, перезаписывают уже созданные тикеты, а не дублируют их.
+     * Перемешивание SplitMix64 взаимно однозначно, так что у строк одного файла id не совпадают.
+     */
+    private static long rowId(long fileKey, long lineOffset) {
+        var z = fileKey + lineOffset * 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+
+        return z ^ (z >>> 31);
+    }
+
+    private static long fileKey(Path csvFile) {
+        var name = csvFile.getFileName().toString().getBytes(StandardCharsets.UTF_8);
+
+        return UUID.nameUUIDFromBytes(name).getMostSignificantBits();
+    }
+
+    /**
+     * Построчное чтение файла блоками по 64 КБ прямо из канала. В отличие от BufferedReader
+     * известно точное число байт каждой строки вместе с переводом строки, которое нужно для контрольной точки.
+     */
+    private static class LineReader {
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocate(1 << 16).flip();
+        private byte[] line = new byte[256];
+        private int lastLineBytes;
+
+        private LineReader(FileChannel channel) {
+            this.channel = channel;
+        }
+
+        /**
+         * Следующая строка без перевода строки или null в конце файла.
+         */
+        String readLine() throws IOException {
+            var length = 0;
+            var consumed = 0;
+
+            while (true) {
+                if (!buffer.hasRemaining()) {
+                    buffer.clear();
+                    var read = channel.read(buffer);
+                    buffer.flip();
+
+                    if (read < 0) {
+                        if (consumed == 0) {
+                            return null;
+                        }
+
+                        lastLineBytes = consumed;
+                        return new String(line, 0, length, StandardCharsets.UTF_8);
+                    }
+                }
+
+                var array = buffer.array();
+                var start = buffer.position();
+                var end = buffer.limit();
+                var newline = start;
+                while (newline < end && array[newline] != '\n') {
+                    newline++;
+                }
+
+                var chunk = newline - start;
+                if (length + chunk > line.length) {
+                    line = Arrays.copyOf(line, Math.max(line.length * 2, length + chunk));
+                }
+                System.arraycopy(array, start, line, length, chunk);
+                length += chunk;
+                consumed += chunk;
+
+                if (newline < end) {
+                    buffer.position(newline + 1);
+                    lastLineBytes = consumed + 1;
+
+                    return new String(line, 0, length, StandardCharsets.UTF_8);
+                }
+
+                buffer.position(end);
+            }
+        }
+
+        /**
+         * Число байт последней прочитанной строки вместе с переводом строки.
+         */
+        int lastLineBytes() {
+            return lastLineBytes;
+        }
+    }
+
+    private static long readCheckpoint(Path checkpointFile) {
+        if (checkpointFile == null || !Files.exists(checkpointFile)) {
+            return 0;
+        }
+
+        try {
+            return Long.parseLong(Files.readString(checkpointFile).trim());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static void writeCheckpoint(Path checkpointFile, long offset) {
+        try {
+            // пишем во временный файл и атомарно переименовываем, чтобы сбой не оставил файл недописанным
+            var tmp = checkpointFile.resolveSibling(checkpointFile.getFileName() + ".tmp");
+            Files.writeString(tmp, Long.toString(offset));
+            Files.move(tmp, checkpointFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            LOGGER.warn("Failed write checkpoint {}: {}", checkpointFile, e.getMessage());
+        }
+    }
+
+    private static void put(BlockingQueue<CsvRow> rows, CsvRow row) {
+        try {
+            rows.put(row);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static CsvRow take(BlockingQueue<CsvRow> rows) {
+        try {
+            return rows.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+
+            throw new RuntimeException(e);
+        }
+    }
+
+    private record CsvRow(IssueRow issueRow, long endOffset) {
+    }
+}
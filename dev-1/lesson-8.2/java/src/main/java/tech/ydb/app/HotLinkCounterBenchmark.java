@@ -0,0 +1,185 @@
+package tech.ydb.app;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import tech.ydb.core.StatusCode;
+import tech.ydb.core.UnexpectedResultException;
+import tech.ydb.core.grpc.GrpcTransport;
+import tech.ydb.query.QueryClient;
+import tech.ydb.query.tools.SessionRetryContext;
+
+/**
+ * Нагрузочный тест связывания популярных тикетов: все связи ведут к нескольким "горячим" тикетам.
+ * <p>
+ * Сравниваются счётчик в строке тикета ({@link IssueYdbRepository#linkTicketsNoInteractive(long, long)})
+ * и счётчик, разложенный по строкам-шардам ({@link ShardedLinkCounterRepository}) с работающим в фоне
+ * {@link LinkCountCompactor}. Связывания выполняются через SessionRetryContext без повторов,
+ * а повторы при конфликте блокировок (ABORTED) выполняет сам тест и считает их.
+ * Для каждого способа печатается пропускная способность, доля повторов и проверка итоговых счётчиков.
+ * <p>
+ * Запуск: {@code HotLinkCounterBenchmark [links] [threads] [hot issues] [shards]}
+ *
+ * @author Kirill Kurdyukov
+ */
+public class HotLinkCounterBenchmark {
+    private static final Logger LOGGER = LoggerFactory.getLogger(HotLinkCounterBenchmark.class);
+    private static final String CONNECTION_STRING = "grpc://localhost:2136/local";
+    private static final int SAVE_BATCH_SIZE = 1000;
+    private static final int COMPACTION_BATCH_SIZE = 1000;
+    private static final Duration COMPACTION_INTERVAL = Duration.ofSeconds(1);
+
+    public static void main(String[] args) throws InterruptedException {
+        var links = args.length > 0 ? Integer.parseInt(args[0]) : 5000;
+        var threads = args.length > 1 ? Integer.parseInt(args[1]) : 16;
+        var hotIssues = args.length > 2 ? Integer.parseInt(args[2]) : 1;
+        var shards = args.length > 3 ? Integer.parseInt(args[3]) : 16;
+
+        try (GrpcTransport grpcTransport = GrpcTransport
+                .forConnectionString(CONNECTION_STRING)
+                .withConnectTimeout(Duration.ofSeconds(10))
+                .build();
+             QueryClient queryClient = QueryClient.newClient(grpcTransport).build()
+        ) {
+            var retryCtx = SessionRetryContext.create(queryClient).build();
+            // Конфликты должны дойти до теста, а не быть молча повторены внутри SessionRetryContext
+            var noRetryCtx = SessionRetryContext.create(queryClient).maxRetries(0).build();
+
+            var schemaYdbRepository = new SchemaYdbRepository(retryCtx);
+            var issueYdbRepository = new IssueYdbRepository(retryCtx);
+
+            // Счётчик в строке тикета
+            var hot = prepare(schemaYdbRepository, issueYdbRepository, links, hotIssues);
+            var rowRepository = new IssueYdbRepository(noRetryCtx);
+            run("row counter", hot, links, threads, pair -> rowRepository.linkTicketsNoInteractive(pair.idT1(), pair.idT2()));
+
+            var rowTotal = issueYdbRepository.findByIds(hot.hotIds()).stream().mapToLong(Issue::linkCounts).sum();
+            LOGGER.info("row counter: hot issues link_count = {} (expected {})", rowTotal, links);
+
+            // Счётчик, разложенный по строкам-шардам
+            hot = prepare(schemaYdbRepository, issueYdbRepository, links, hotIssues);
+            var shardedRepository = new ShardedLinkCounterRepository(noRetryCtx, shards);
+            var compactorRepository = new ShardedLinkCounterRepository(retryCtx, shards);
+
+            try (var compactor = new LinkCountCompactor(compactorRepository, COMPACTION_BATCH_SIZE, COMPACTION_INTERVAL)) {
+                compactor.start();
+
+                run(shards + " sharded counters", hot, links, threads, pair -> {
+                    shardedRepository.linkTickets(pair.idT1(), pair.idT2());
+
+                    return null;
+                });
+            }
+
+            var shardedTotal = hot.hotIds().stream().mapToLong(compactorRepository::linkCount).sum();
+            LOGGER.info("{} sharded counters: hot issues link_count = {} (expected {})", shards, shardedTotal, links);
+
+            YqlStatement.logStats();
+        }
+    }
+
+    private static HotIssues prepare(
+            SchemaYdbRepository schemaYdbRepository,
+            IssueYdbRepository issueYdbRepository,
+            int links,
+            int hotIssues
+    ) {
+        schemaYdbRepository.dropSchema();
+        schemaYdbRepository.createSchema();
+        schemaYdbRepository.createShardedLinkCounters();
+
+        var titleAuthors = new ArrayList<TitleAuthor>();
+        for (int i = 0; i < links + hotIssues; i++) {
+            titleAuthors.add(new TitleAuthor("Ticket " + i, "Author " + i % 10));
+
+            if (titleAuthors.size() == SAVE_BATCH_SIZE) {
+                issueYdbRepository.saveAll(titleAuthors);
+                titleAuthors.clear();
+            }
+        }
+        if (!titleAuthors.isEmpty()) {
+            issueYdbRepository.saveAll(titleAuthors);
+        }
+
+        var ids = new ArrayList<Long>();
+        issueYdbRepository.findAll(issue -> ids.add(issue.id()));
+
+        // Каждая связь соединяет горячий тикет с отдельным холодным, поэтому пары не повторяются
+        return new HotIssues(List.copyOf(ids.subList(0, hotIssues)), List.copyOf(ids.subList(hotIssues, ids.size())));
+    }
+
+    private static void run(
+            String name,
+            HotIssues hot,
+            int links,
+            int threads,
+            Function<LinkPair, ?> linker
+    ) throws InterruptedException {
+        var next = new AtomicInteger();
+        var attempts = new AtomicLong();
+        var conflicts = new AtomicLong();
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+
+        var start = System.nanoTime();
+
+        for (int i = 0; i < threads; i++) {
+            executor.submit(() -> {
+                int index;
+                while ((index = next.getAndIncrement()) < links) {
+                    var pair = new LinkPair(hot.hotIds().get(index % hot.hotIds().size()), hot.coldIds().get(index));
+
+                    while (true) {
+                        attempts.incrementAndGet();
+
+                        try {
+                            linker.apply(pair);
+                            break;
+                        } catch (RuntimeException e) {
+                            if (!isLockConflict(e)) {
+                                LOGGER.error("Failed link {}", pair, e);
+                                break;
+                            }
+
+                            conflicts.incrementAndGet();
+                        }
+                    }
+                }
+            });
+        }
+
+        executor.shutdown();
+        executor.awaitTermination(1, TimeUnit.HOURS);
+
+        var elapsedSeconds = (System.nanoTime() - start) / 1_000_000_000.0;
+
+        LOGGER.info("{}: {} links in {} s, {} links/s, {} attempts, {} conflicts ({}% of attempts retried)",
+                name,
+                links,
+                String.format("%.2f", elapsedSeconds),
+                Math.round(links / elapsedSeconds),
+                attempts.get(),
+                conflicts.get(),
+                String.format("%.1f", 100.0 * conflicts.get() / Math.max(attempts.get(), 1))
+        );
+    }
+
+    private static boolean isLockConflict(Throwable th) {
+        while (th instanceof CompletionException && th.getCause() != null) {
+            th = th.getCause();
+        }
+
+        return th instanceof UnexpectedResultException e && e.getStatus().getCode() == StatusCode.ABORTED;
+    }
+
+    private record HotIssues(List<Long> hotIds, List<Long> coldIds) {
+    }
+}
@@ -0,0 +1,29 @@
+package tech.ydb.app;
+
+import java.time.Instant;
+
+/**
+ * Запись changefeed issues/updates в режиме NEW_AND_OLD_IMAGES.
+ * <p>
+ * oldImage равен null для вставки (в том числе для записей начального сканирования),
+ * newImage равен null для удаления. offset - смещение сообщения с изменением в партиции changefeed,
+ * по нему обработчики отбрасывают изменения, повторно доставленные после перезапуска.
+ *
+ * @author Kirill Kurdyukov
+ */
+public record IssueChange(long id, Image oldImage, Image newImage, long offset) {
+
+    /**
+     * Значения неключевых колонок строки issues до или после изменения.
+     */
+    public record Image(String title, Instant createdAt, String author, Long linkCount, String status) {
+    }
+
+    public boolean isInsert() {
+        return oldImage == null && newImage != null;
+    }
+
+    public boolean isDelete() {
+        return newImage == null;
+    }
+}
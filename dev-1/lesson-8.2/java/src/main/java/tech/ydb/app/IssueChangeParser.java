@@ -0,0 +1,311 @@
+package tech.ydb.app;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+
+/**
+ * Разбор JSON-записей changefeed issues/updates прямо из байт сообщения.
+ * <p>
+ * Сообщение не превращается в строку целиком: имена полей сравниваются с байтовыми константами,
+ * числа собираются по цифрам, а строки создаются только для значений колонок.
+ * Незнакомые поля пропускаются, поэтому добавление колонок в таблицу не ломает разбор.
+ * <p>
+ * Пример записи:
+ * <pre>
+ * {"key":[1],"oldImage":{"title":"...","status":"OPEN"},"newImage":{"title":"...","status":"DONE"},"ts":[...]}
+ * </pre>
+ *
+ * @author Kirill Kurdyukov
+ */
+public final class IssueChangeParser {
+    private static final byte[] KEY = bytes("key");
+    private static final byte[] OLD_IMAGE = bytes("oldImage");
+    private static final byte[] NEW_IMAGE = bytes("newImage");
+    private static final byte[] TITLE = bytes("title");
+    private static final byte[] CREATED_AT = bytes("created_at");
+    private static final byte[] AUTHOR = bytes("author");
+    private static final byte[] LINK_COUNT = bytes("link_count");
+    private static final byte[] STATUS = bytes("status");
+
+    private final byte[] data;
+    private int pos;
+
+    // Границы имени последнего прочитанного поля
+    private int nameStart;
+    private int nameEnd;
+
+    private IssueChangeParser(byte[] data) {
+        this.data = data;
+    }
+
+    /**
+     * Возвращает null для служебных записей без ключа (например, resolved timestamps).
+     */
+    public static IssueChange parse(byte[] data, long offset) {
+        return new IssueChangeParser(data).parseChange(offset);
+    }
+
+    private IssueChange parseChange(long offset) {
+        Long id = null;
+        IssueChange.Image oldImage = null;
+        IssueChange.Image newImage = null;
+
+        expect('{');
+        if (!tryConsume('}')) {
+            do {
+                readFieldName();
+
+                if (fieldIs(KEY)) {
+                    expect('[');
+                    id = readLong();
+                    skipRestOfArray();
+                } else if (fieldIs(OLD_IMAGE)) {
+                    oldImage = readImage();
+                } else if (fieldIs(NEW_IMAGE)) {
+                    newImage = readImage();
+                } else {
+                    skipValue();
+                }
+            } while (tryConsume(','));
+            expect('}');
+        }
+
+        return id == null ? null : new IssueChange(id, oldImage, newImage, offset);
+    }
+
+    private IssueChange.Image readImage() {
+        if (tryConsumeNull()) {
+            return null;
+        }
+
+        String title = null;
+        Instant createdAt = null;
+        String author = null;
+        Long linkCount = null;
+        String status = null;
+
+        expect('{');
+        if (!tryConsume('}')) {
+            do {
+                readFieldName();
+
+                if (fieldIs(TITLE)) {
+                    title = readNullableString();
+                } else if (fieldIs(CREATED_AT)) {
+                    createdAt = readNullableTimestamp();
+                } else if (fieldIs(AUTHOR)) {
+                    author = readNullableString();
+                } else if (fieldIs(LINK_COUNT)) {
+                    linkCount = tryConsumeNull() ? null : readLong();
+                } else if (fieldIs(STATUS)) {
+                    status = readNullableString();
+                } else {
+                    skipValue();
+                }
+            } while (tryConsume(','));
+            expect('}');
+        }
+
+        return new IssueChange.Image(title, createdAt, author, linkCount, status);
+    }
+
+    /**
+     * Читает имя поля вместе с двоеточием, запоминая границы имени без создания строки.
+     */
+    private void readFieldName() {
+        expect('"');
+        nameStart = pos;
+
+        while (data[pos] != '"') {
+            pos += data[pos] == '\\' ? 2 : 1;
+        }
+
+        nameEnd = pos;
+        pos++;
+        expect(':');
+    }
+
+    private boolean fieldIs(byte[] name) {
+        if (nameEnd - nameStart != name.length) {
+            return false;
+        }
+
+        for (int i = 0; i < name.length; i++) {
+            if (data[nameStart + i] != name[i]) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private Instant readNullableTimestamp() {
+        if (tryConsumeNull()) {
+            return null;
+        }
+
+        skipWhitespace();
+        if (data[pos] == '"') {
+            return Instant.parse(readString());
+        }
+
+        // Timestamp в виде числа микросекунд
+        var micros = readLong();
+
+        return Instant.ofEpochSecond(Math.floorDiv(micros, 1_000_000), Math.floorMod(micros, 1_000_000) * 1000);
+    }
+
+    private String readNullableString() {
+        return tryConsumeNull() ? null : readString();
+    }
+
+    private String readString() {
+        expect('"');
+        var start = pos;
+
+        while (data[pos] != '"') {
+            if (data[pos] == '\\') {
+                return readEscapedString(start);
+            }
+            pos++;
+        }
+
+        pos++;
+
+        return new String(data, start, pos - 1 - start, StandardCharsets.UTF_8);
+    }
+
+    private String readEscapedString(int start) {
+        var builder = new StringBuilder();
+        var segmentStart = start;
+
+        while (data[pos] != '"') {
+            if (data[pos] != '\\') {
+                pos++;
+                continue;
+            }
+
+            builder.append(new String(data, segmentStart, pos - segmentStart, StandardCharsets.UTF_8));
+            pos++;
+
+            switch (data[pos]) {
+                case 'b' -> builder.append('\b');
+                case 'f' -> builder.append('\f');
+                case 'n' -> builder.append('\n');
+                case 'r' -> builder.append('\r');
+                case 't' -> builder.append('\t');
+                case 'u' -> {
+                    builder.append((char) Integer.parseInt(new String(data, pos + 1, 4, StandardCharsets.US_ASCII), 16));
+                    pos += 4;
+                }
+                default -> builder.append((char) data[pos]);
+            }
+
+            pos++;
+            segmentStart = pos;
+        }
+
+        builder.append(new String(data, segmentStart, pos - segmentStart, StandardCharsets.UTF_8));
+        pos++;
+
+        return builder.toString();
+    }
+
+    private long readLong() {
+        skipWhitespace();
+
+        var negative = data[pos] == '-';
+        if (negative) {
+            pos++;
+        }
+
+        long value = 0;
+        while (pos < data.length && data[pos] >= '0' && data[pos] <= '9') {
+            value = value * 10 + (data[pos] - '0');
+            pos++;
+        }
+
+        return negative ? -value : value;
+    }
+
+    private void skipRestOfArray() {
+        while (tryConsume(',')) {
+            skipValue();
+        }
+        expect(']');
+    }
+
+    private void skipValue() {
+        skipWhitespace();
+
+        switch (data[pos]) {
+            case '"' -> {
+                pos++;
+                while (data[pos] != '"') {
+                    pos += data[pos] == '\\' ? 2 : 1;
+                }
+                pos++;
+            }
+            case '{', '[' -> {
+                var depth = 0;
+                do {
+                    switch (data[pos]) {
+                        case '{', '[' -> depth++;
+                        case '}', ']' -> depth--;
+                        case '"' -> {
+                            skipValue();
+                            continue;
+                        }
+                        default -> {
+                        }
+                    }
+                    pos++;
+                } while (depth > 0);
+            }
+            default -> {
+                // число, true, false или null
+                while (pos < data.length && data[pos] != ',' && data[pos] != '}' && data[pos] != ']') {
+                    pos++;
+                }
+            }
+        }
+    }
+
+    private boolean tryConsumeNull() {
+        skipWhitespace();
+
+        if (data[pos] == 'n') {
+            pos += 4;
+            return true;
+        }
+
+        return false;
+    }
+
+    private boolean tryConsume(char expected) {
+        skipWhitespace();
+
+        if (pos < data.length && data[pos] == expected) {
+            pos++;
+            return true;
+        }
+
+        return false;
+    }
+
+    private void expect(char expected) {
+        if (!tryConsume(expected)) {
+            throw new IllegalArgumentException("Expected '" + expected + "' at position " + pos);
+        }
+    }
+
+    private void skipWhitespace() {
+        while (pos < data.length && (data[pos] == ' ' || data[pos] == '\n' || data[pos] == '\r' || data[pos] == '\t')) {
+            pos++;
+        }
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.US_ASCII);
+    }
+}
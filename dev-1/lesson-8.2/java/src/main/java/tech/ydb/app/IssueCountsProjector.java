@@ -0,0 +1,125 @@
+package tech.ydb.app;
+
+import java.util.ArrayList;
+import java.util.List;
+import tech.ydb.common.transaction.TxMode;
+import tech.ydb.query.tools.QueryReader;
+import tech.ydb.query.tools.SessionRetryContext;
+import tech.ydb.table.query.Params;
+import tech.ydb.table.values.ListType;
+import tech.ydb.table.values.OptionalType;
+import tech.ydb.table.values.OptionalValue;
+import tech.ydb.table.values.PrimitiveType;
+import tech.ydb.table.values.PrimitiveValue;
+import tech.ydb.table.values.StructType;
+import tech.ydb.table.values.StructValue;
+
+/**
+ * Поддержка таблиц issue_counts_by_status и issue_counts_by_author по changefeed issues/updates.
+ * <p>
+ * Каждое изменение превращается в точные приращения: старый образ строки уменьшает счётчики
+ * своих статуса и автора на единицу, новый образ - увеличивает. Приращения пачки суммируются
+ * на сервере и применяются одной транзакцией вместе с прогрессом партиции в issue_counts_progress.
+ * Изменения со смещением не больше сохранённого прогресса отбрасываются, поэтому повторная доставка
+ * пачки после перезапуска не искажает счётчики. Одного смещения на партицию достаточно, потому что
+ * {@link ReaderChangefeedWorker} передаёт пачки партиции строго по порядку и повторяет упавшую пачку,
+ * не переходя к следующим: прогресс не может обогнать неприменённые изменения.
+ * <p>
+ * Тикеты без статуса или автора (NULL) в соответствующей таблице не учитываются.
+ *
+ * @author Kirill Kurdyukov
+ */
+public class IssueCountsProjector implements ReaderChangefeedWorker.ChangeHandler {
+    // Отдельный читатель changefeed, добавляется в SchemaYdbRepository.createSchema()
+    public static final String CONSUMER_NAME = "counts";
+
+    private static final StructType DELTA_TYPE = StructType.of(
+            "change_offset", PrimitiveType.Int64,
+            "status", OptionalType.of(PrimitiveType.Text),
+            "author", OptionalType.of(PrimitiveType.Text),
+            "delta", PrimitiveType.Int64
+    );
+
+    private static final YqlStatement APPLY_DELTAS = YqlStatement.register("applyIssueCountDeltas", """
+            DECLARE $partition_id AS Int64;
+            DECLARE $batch_last_offset AS Int64;
+            DECLARE $deltas AS List<Struct<change_offset: Int64, status: Text?, author: Text?, delta: Int64>>;
+
+            $last_offset = COALESCE(
+                (SELECT last_offset FROM issue_counts_progress WHERE partition_id = $partition_id), -1
+            );
+
+            -- изменения, уже учтённые до перезапуска, отбрасываются
+            $new_deltas = SELECT * FROM AS_TABLE($deltas) WHERE change_offset > $last_offset;
+
+            $by_status = SELECT status, SUM(delta) AS delta FROM $new_deltas
+                WHERE status IS NOT NULL
+                GROUP BY status
+                HAVING SUM(delta) != 0;
+
+            $by_author = SELECT author, SUM(delta) AS delta FROM $new_deltas
+                WHERE author IS NOT NULL
+                GROUP BY author
+                HAVING SUM(delta) != 0;
+
+            UPSERT INTO issue_counts_by_status
+            SELECT d.status AS status, COALESCE(c.issue_count, 0) + d.delta AS issue_count
+            FROM $by_status AS d LEFT JOIN issue_counts_by_status AS c ON d.status = c.status;
+
+            UPSERT INTO issue_counts_by_author
+            SELECT d.author AS author, COALESCE(c.issue_count, 0) + d.delta AS issue_count
+            FROM $by_author AS d LEFT JOIN issue_counts_by_author AS c ON d.author = c.author;
+
+            UPSERT INTO issue_counts_progress (partition_id, last_offset)
+            VALUES ($partition_id, MAX_OF($last_offset, $batch_last_offset));
+            """);
+
+    private final SessionRetryContext retryCtx;
+
+    public IssueCountsProjector(SessionRetryContext retryCtx) {
+        this.retryCtx = retryCtx;
+    }
+
+    @Override
+    public void handle(long partitionId, List<IssueChange> changes) {
+        var deltas = new ArrayList<StructValue>();
+        long batchLastOffset = -1;
+
+        for (var change : changes) {
+            if (change.oldImage() != null) {
+                deltas.add(delta(change, change.oldImage(), -1));
+            }
+            if (change.newImage() != null) {
+                deltas.add(delta(change, change.newImage(), 1));
+            }
+
+            batchLastOffset = Math.max(batchLastOffset, change.offset());
+        }
+
+        var params = Params.of(
+                "$partition_id", PrimitiveValue.newInt64(partitionId),
+                "$batch_last_offset", PrimitiveValue.newInt64(batchLastOffset),
+                "$deltas", ListType.of(DELTA_TYPE).newValue(deltas)
+        );
+
+        // Пачки разных партиций могут менять одни и те же счётчики, конфликты разрешаются повтором транзакции
+        retryCtx.supplyResult(
+                session -> QueryReader.readFrom(APPLY_DELTAS.createQuery(session, TxMode.SERIALIZABLE_RW, params))
+        ).join().getValue();
+    }
+
+    private static StructValue delta(IssueChange change, IssueChange.Image image, long delta) {
+        return DELTA_TYPE.newValue(
+                "change_offset", PrimitiveValue.newInt64(change.offset()),
+                "status", optionalText(image.status()),
+                "author", optionalText(image.author()),
+                "delta", PrimitiveValue.newInt64(delta)
+        );
+    }
+
+    private static OptionalValue optionalText(String value) {
+        var optionalType = OptionalType.of(PrimitiveType.Text);
+
+        return value == null ? optionalType.emptyValue() : optionalType.newValue(PrimitiveValue.newText(value));
+    }
+}
@@ -0,0 +1,17 @@
+package tech.ydb.app;
+
+import java.util.List;
+
+/**
+ * Страница тикетов постраничного чтения
+ *
+ * @author Kirill Kurdyukov
+ */
+public record IssuePage(
+        List<Issue> issues,     // Тикеты страницы в порядке ключа
+        String nextPageToken    // Токен следующей страницы, null - страница последняя
+) {
+    public boolean hasNext() {
+        return nextPageToken != null;
+    }
+}
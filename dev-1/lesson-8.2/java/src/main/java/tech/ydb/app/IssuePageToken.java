@@ -0,0 +1,76 @@
+package tech.ydb.app;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Objects;
+
+/**
+ * Позиция постраничного чтения: ключ последней строки, отданной клиенту.
+ * <p>
+ * Для клиента токен непрозрачен - это base64 от версии формата, вида чтения, id последнего тикета
+ * и, для чтения по автору, самого автора. Следующая страница начинается строго после этого ключа,
+ * поэтому её стоимость не зависит от того, сколько страниц уже прочитано.
+ *
+ * @author Kirill Kurdyukov
+ */
+final class IssuePageToken {
+    private static final byte VERSION = 1;
+
+    enum Kind {
+        ALL,
+        BY_AUTHOR
+    }
+
+    private final Kind kind;
+    private final String author;
+    private final long lastId;
+
+    IssuePageToken(Kind kind, String author, long lastId) {
+        this.kind = kind;
+        this.author = author;
+        this.lastId = lastId;
+    }
+
+    long lastId() {
+        return lastId;
+    }
+
+    String encode() {
+        var authorBytes = author == null ? new byte[0] : author.getBytes(StandardCharsets.UTF_8);
+        var buffer = ByteBuffer.allocate(2 + Long.BYTES + authorBytes.length)
+                .put(VERSION)
+                .put((byte) kind.ordinal())
+                .putLong(lastId)
+                .put(authorBytes);
+
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(buffer.array());
+    }
+
+    /**
+     * Разбирает токен и проверяет, что он выдан для того же вида чтения и того же автора.
+     */
+    static IssuePageToken decode(String token, Kind expectedKind, String expectedAuthor) {
+        ByteBuffer buffer;
+        try {
+            buffer = ByteBuffer.wrap(Base64.getUrlDecoder().decode(token));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Malformed page token: " + token, e);
+        }
+
+        if (buffer.remaining() < 2 + Long.BYTES || buffer.get() != VERSION || buffer.get() != expectedKind.ordinal()) {
+            throw new IllegalArgumentException("Page token is not valid for this query: " + token);
+        }
+
+        var lastId = buffer.getLong();
+        var authorBytes = new byte[buffer.remaining()];
+        buffer.get(authorBytes);
+
+        var author = expectedKind == Kind.ALL && authorBytes.length == 0 ? null : new String(authorBytes, StandardCharsets.UTF_8);
+        if (!Objects.equals(author, expectedAuthor)) {
+            throw new IllegalArgumentException("Page token is not valid for this query: " + token);
+        }
+
+        return new IssuePageToken(expectedKind, author, lastId);
+    }
+}
@@ -0,0 +1,12 @@
+package tech.ydb.app;
+
+/**
+ * Строка для массовой загрузки: тикет вместе с его id
+ *
+ * @author Kirill Kurdyukov
+ */
+public record IssueRow(
+        long id,                 // Первичный ключ; повторная загрузка строки с тем же id перезапишет её
+        TitleAuthor titleAuthor  // Данные тикета
+) {
+}
@@ -2,15 +2,31 @@ package tech.ydb.app;
 
 import java.time.Instant;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 import tech.ydb.common.transaction.TxMode;
 import tech.ydb.core.Result;
+import tech.ydb.query.QuerySession;
+import tech.ydb.query.QueryStream;
 import tech.ydb.query.tools.QueryReader;
 import tech.ydb.query.tools.SessionRetryContext;
 import tech.ydb.table.query.Params;
+import tech.ydb.table.result.ResultSetReader;
 import tech.ydb.table.values.ListType;
 import tech.ydb.table.values.OptionalType;
 import tech.ydb.table.values.PrimitiveType;
@@ -21,31 +37,356 @@ import tech.ydb.table.values.StructType;
  * @author Kirill Kurdyukov
  */
 public class IssueYdbRepository {
+    // Все запросы репозитория объявлены один раз с неизменным текстом,
+    // чтобы сервер компилировал их только при первом выполнении, см. YqlStatement
+    private static final YqlStatement FIND_BY_IDS = YqlStatement.register("findByIds", """
+            DECLARE $ids AS List<Struct<id: Int64>>;
+            SELECT id, title, created_at, author, link_count, status
+            FROM issues WHERE id IN (SELECT id FROM AS_TABLE($ids));
+            """);
+
+    private static final YqlStatement SAVE_ALL = YqlStatement.register("saveAll", """
+            DECLARE $args AS List<Struct<
+            id: Int64,
+            title: Text,
+            author: Text?, -- тут знак вопроса означает, что в Timestamp может быть передан NULL
+            created_at: Timestamp,
+            >>;
+
+            UPSERT INTO issues
+            SELECT * FROM AS_TABLE($args);
+            """);
+
+    private static final YqlStatement UPDATE_STATUS = YqlStatement.register("updateStatus", """
+            DECLARE $id AS Int64;
+            DECLARE $new_status AS Text;
+
+            UPDATE issues SET status = $new_status WHERE id = $id;
+            """);
+
+    private static final YqlStatement UPDATE_STATUSES = YqlStatement.register("updateStatuses", """
+            DECLARE $batch AS List<Struct<id: Int64, status: Text>>;
+
+            UPDATE issues ON
+            SELECT id, status FROM AS_TABLE($batch);
+            """);
+
+    private static final YqlStatement LINK_TICKETS = YqlStatement.register("linkTicketsNoInteractive", """
+            DECLARE $t1 AS Int64;
+            DECLARE $t2 AS Int64;
+
+            UPDATE issues
+            SET link_count = COALESCE(link_count, 0) + 1
+            WHERE id IN ($t1, $t2);
+
+            INSERT INTO links (source, destination)
+            VALUES ($t1, $t2), ($t2, $t1);
+
+            SELECT id, link_count FROM issues
+            WHERE id IN ($t1, $t2)
+            """);
+
+    private static final YqlStatement LINK_TICKETS_BATCH = YqlStatement.register("linkTicketsBatch", """
+            DECLARE $pairs AS List<Struct<t1: Int64, t2: Int64>>;
+
+            -- каждая пара даёт связь в обе стороны, дубли внутри пачки и связи тикета с самим собой отбрасываются
+            $requested = SELECT DISTINCT source, destination FROM (
+                SELECT t1 AS source, t2 AS destination FROM AS_TABLE($pairs)
+                UNION ALL
+                SELECT t2 AS source, t1 AS destination FROM AS_TABLE($pairs)
+            ) WHERE source != destination;
+
+            -- уже существующие связи не создаются повторно и не увеличивают счётчики,
+            -- поэтому пачку можно безопасно повторить
+            $new_links =
+            SELECT r.source AS source, r.destination AS destination
+            FROM $requested AS r LEFT ONLY JOIN links AS l
+            ON r.source = l.source AND r.destination = l.destination;
+
+            $increments =
+            SELECT source AS id, COUNT(*) AS cnt
+            FROM $new_links
+            GROUP BY source;
+
+            -- именованные выражения вычисляются в момент использования,
+            -- поэтому счётчики обновляются до того, как новые связи попадут в links
+            UPDATE issues ON
+            SELECT i.id AS id, COALESCE(i.link_count, 0) + d.cnt AS link_count
+            FROM $increments AS d JOIN issues AS i ON d.id = i.id;
+
+            INSERT INTO links
+            SELECT source, destination FROM $new_links;
+            """);
+
+    private static final YqlStatement LINK_TICKETS_UPDATE_COUNTS = YqlStatement.register("linkTicketsInteractive.updateCounts", """
+            DECLARE $t1 AS Int64;
+            DECLARE $t2 AS Int64;
+
+            UPDATE issues
+            SET link_count = COALESCE(link_count, 0) + 1
+            WHERE id IN ($t1, $t2);
+            """);
+
+    private static final YqlStatement LINK_TICKETS_INSERT_LINKS = YqlStatement.register("linkTicketsInteractive.insertLinks", """
+            DECLARE $t1 AS Int64;
+            DECLARE $t2 AS Int64;
+
+            INSERT INTO links (source, destination)
+            VALUES ($t1, $t2), ($t2, $t1);
+            """);
+
+    private static final YqlStatement LINK_TICKETS_SELECT_COUNTS = YqlStatement.register("linkTicketsInteractive.selectCounts", """
+            DECLARE $t1 AS Int64;
+            DECLARE $t2 AS Int64;
+
+            SELECT id, link_count FROM issues
+            WHERE id IN ($t1, $t2)
+            """);
+
+    private static final YqlStatement ADD_ISSUE = YqlStatement.register("addIssue", """
+            DECLARE $id AS Int64;
+            DECLARE $title AS Text;
+            DECLARE $created_at AS Timestamp;
+            DECLARE $author AS Text;
+            UPSERT INTO issues (id, title, created_at, author)
+            VALUES ($id, $title, $created_at, $author);
+            """);
+
+    private static final YqlStatement FIND_FUTURES = YqlStatement.register("findFutures", """
+            -- выбираем ID и заголовки задач, которые должны быть созданы в будущем
+            $future =
+            SELECT id, title
+            FROM issues
+            WHERE status = 'future';
+
+            -- возвращаем их как результат запроса
+            SELECT * FROM $future;
+
+            -- и обновляем статус/время точно у этих же задач
+            UPDATE issues ON
+
+            SELECT id, CurrentUtcTimestamp() AS created_at, CAST('new' AS Utf8) AS status
+
+            FROM $future
+            """);
+
+    private static final YqlStatement DELETE_TASKS = YqlStatement.register("deleteTasks", """
+            -- принимаем id задач для удаления
+            DECLARE $issues_ids_arg AS List<Int64>;
+
+            -- это лямбда-функция для преобразования отдельного элемента списка в структуру
+            $list_to_id_struct = ($id) -> { RETURN <|id:$id|>};
+
+            -- тут удаляем из списка возможные дубли и преобразовываем список id в список структур
+            $issue_ids_list = ListMap(ListUniq($issues_ids_arg), $list_to_id_struct);
+
+            -- внутри других запросов проще работать с результатом запроса к таблице,
+            -- чтобы не помнить везде о том что это когда-то было списком структур или
+            -- параметром
+            $issues = SELECT id FROM AS_TABLE($issue_ids_list);
+
+
+            -- выбираем связи этих задач
+            $linked_issues =
+            SELECT source, destination
+
+            FROM links
+
+            WHERE source IN $issues;
+
+
+            -- и связи в обратную сторону
+            $linked_issues_mirrored =
+            SELECT destination AS source, source AS destination
+            FROM $linked_issues;
+
+
+            $mirrored_dec_map =
+            SELECT source AS id, COUNT(*) AS cnt
+            FROM $linked_issues_mirrored
+
+            GROUP BY source;
+
+
+            -- именованные выражения это просто подстановка запросов, т.е. промежуточного сохранения данных не происходит
+            -- поэтому важно выполнять запросы в таком порядке, чтобы данные, на которые опирается выражение ещё не были испорчены
+            -- к моменту его выполнения, проще всего идти с конца
+
+            -- сначала обновляем счётчики у связанных тикетов
+            UPDATE issues ON
+
+            SELECT i.id AS id, i.link_count - d.cnt AS link_count
+
+            FROM $mirrored_dec_map AS d JOIN issues AS i ON d.id = i.id;
+
+
+            -- теперь обновляем счётчики у переданных тикетов
+            UPDATE issues
+            SET link_count=link_count-1
+
+            WHERE id IN $issues;
+
+
+            -- и удаляем сами тикеты
+            -- если тикеты удалить раньше, то
+            DELETE FROM issues
+
+            WHERE id IN $issues;
+            """);
+
+    // Индекс authorIndex находит строки автора, остальные колонки читаются из основной таблицы по id
+    private static final YqlStatement FIND_BY_AUTHOR = YqlStatement.register("findByAuthor", """
+            DECLARE $author AS Text;
+            SELECT id, title, created_at, author, COALESCE(link_count, 0), status FROM issues VIEW authorIndex
+            WHERE author = $author
+            ORDER BY author, id;
+            """);
+
+    private static final YqlStatement FIND_BY_AUTHOR_AFTER_ID = YqlStatement.register("findByAuthor.afterId", """
+            DECLARE $author AS Text;
+            DECLARE $last_id AS Int64;
+            SELECT id, title, created_at, author, COALESCE(link_count, 0), status FROM issues VIEW authorIndex
+            WHERE author = $author AND id > $last_id
+            ORDER BY author, id;
+            """);
+
+    // authorTitleIndex покрывает title, поэтому запрос читает только индексную таблицу
+    private static final YqlStatement FIND_TITLES_BY_AUTHOR = YqlStatement.register("findTitlesByAuthor", """
+            DECLARE $author AS Text;
+            SELECT id, title FROM issues VIEW authorTitleIndex
+            WHERE author = $author
+            ORDER BY author, id;
+            """);
+
+    private static final YqlStatement FIND_TITLES_BY_AUTHOR_AFTER_ID = YqlStatement.register("findTitlesByAuthor.afterId", """
+            DECLARE $author AS Text;
+            DECLARE $last_id AS Int64;
+            SELECT id, title FROM issues VIEW authorTitleIndex
+            WHERE author = $author AND id > $last_id
+            ORDER BY author, id;
+            """);
+
+    private static final YqlStatement FIND_ALL = YqlStatement.register("findAll",
+            "SELECT id, title, created_at, author, COALESCE(link_count, 0), status FROM issues;");
+
+    private static final YqlStatement FIND_ALL_ORDERED = YqlStatement.register("findAll.first", """
+            SELECT id, title, created_at, author, COALESCE(link_count, 0), status FROM issues
+            ORDER BY id;
+            """);
+
+    private static final YqlStatement FIND_ALL_AFTER_ID = YqlStatement.register("findAll.afterId", """
+            DECLARE $last_id AS Int64;
+            SELECT id, title, created_at, author, COALESCE(link_count, 0), status FROM issues
+            WHERE id > $last_id
+            ORDER BY id;
+            """);
+
+    // Постраничное чтение: каждая страница - чтение диапазона первичного ключа не больше $limit строк
+    private static final YqlStatement FIND_PAGE_FIRST = YqlStatement.register("findPage.first", """
+            DECLARE $limit AS Uint64;
+            SELECT id, title, created_at, author, COALESCE(link_count, 0), status FROM issues
+            ORDER BY id
+            LIMIT $limit;
+            """);
+
+    private static final YqlStatement FIND_PAGE_AFTER_ID = YqlStatement.register("findPage.afterId", """
+            DECLARE $last_id AS Int64;
+            DECLARE $limit AS Uint64;
+            SELECT id, title, created_at, author, COALESCE(link_count, 0), status FROM issues
+            WHERE id > $last_id
+            ORDER BY id
+            LIMIT $limit;
+            """);
+
+    // Ключ authorIndex - (author, id), поэтому страница автора тоже читается диапазоном индекса
+    private static final YqlStatement FIND_BY_AUTHOR_PAGE_FIRST = YqlStatement.register("findByAuthorPage.first", """
+            DECLARE $author AS Text;
+            DECLARE $limit AS Uint64;
+            SELECT id, title, created_at, author, COALESCE(link_count, 0), status FROM issues VIEW authorIndex
+            WHERE author = $author
+            ORDER BY author, id
+            LIMIT $limit;
+            """);
+
+    private static final YqlStatement FIND_BY_AUTHOR_PAGE_AFTER_ID = YqlStatement.register("findByAuthorPage.afterId", """
+            DECLARE $author AS Text;
+            DECLARE $last_id AS Int64;
+            DECLARE $limit AS Uint64;
+            SELECT id, title, created_at, author, COALESCE(link_count, 0), status FROM issues VIEW authorIndex
+            WHERE author = $author AND id > $last_id
+            ORDER BY author, id
+            LIMIT $limit;
+            """);
+
+    private static final YqlStatement COUNT_BY_STATUS = YqlStatement.register("countByStatus", """
+            DECLARE $status AS Text;
+            SELECT issue_count FROM issue_counts_by_status WHERE status = $status;
+            """);
+
+    private static final YqlStatement COUNT_BY_AUTHOR = YqlStatement.register("countByAuthor", """
+            DECLARE $author AS Text;
+            SELECT issue_count FROM issue_counts_by_author WHERE author = $author;
+            """);
+
+    // Число пар в одной транзакции linkTickets: больше пачка - меньше запросов, но дольше транзакция
+    // и выше шанс конфликта с параллельными изменениями тех же тикетов
+    private static final int LINK_BATCH_SIZE = 1000;
+
+    // Маркер конца потока для streamAll()
+    private static final List<Issue> END_OF_STREAM = Collections.unmodifiableList(new ArrayList<>());
+
     private final SessionRetryContext retryCtx;
+    // Индекс заголовков, который поддерживает TitleIndexProjector; null, если поиск не нужен
+    private final TitleSearchIndex titleIndex;
 
     public IssueYdbRepository(SessionRetryContext retryCtx) {
+        this(retryCtx, null);
+    }
+
+    public IssueYdbRepository(SessionRetryContext retryCtx, TitleSearchIndex titleIndex) {
         this.retryCtx = retryCtx;
+        this.titleIndex = titleIndex;
     }
 
     public List<Issue> findByIds(List<Long> ids) {
+        return await(findByIdsAsync(ids));
+    }
+
+    /**
+     * Чтение тикетов по id с заданным уровнем согласованности.
+     * Для дашбордов и других читающих сценариев достаточно SNAPSHOT или STALE:
+     * такие запросы не берут блокировки и не мешают пишущим транзакциям.
+     */
+    public List<Issue> findByIds(List<Long> ids, ReadConsistency consistency) {
+        return await(findByIdsAsync(ids, consistency));
+    }
+
+    /**
+     * Асинхронные варианты методов не блокируют вызывающий поток:
+     * результат возвращается через CompletableFuture, который завершится после ответа сервера
+     * (с учётом повторных попыток SessionRetryContext). Так несколько потоков могут держать
+     * в работе тысячи одновременных запросов.
+     */
+    public CompletableFuture<List<Issue>> findByIdsAsync(List<Long> ids) {
+        return findByIdsAsync(ids, ReadConsistency.SERIALIZABLE);
+    }
+
+    public CompletableFuture<List<Issue>> findByIdsAsync(List<Long> ids, ReadConsistency consistency) {
         var structType = StructType.of("id", PrimitiveType.Int64);
 
         var idsParams = Params.of("$ids", ListType.of(structType).newValue(
                 ids.stream().map(id -> structType.newValue("id", PrimitiveValue.newInt64(id))).toList())
         );
-        var queryReader = retryCtx.supplyResult(session -> QueryReader.readFrom(
-                session.createQuery("""
-                                DECLARE $ids AS List<Struct<id: Int64>>;
-                                SELECT id, title, created_at, author, link_count, status
-                                FROM issues WHERE id IN (SELECT id FROM AS_TABLE($ids));
-                                """,
-                        TxMode.SERIALIZABLE_RW, idsParams)
-        )).join().getValue();
-
-        return fetchIssues(queryReader);
+        return retryCtx.supplyResult(session -> QueryReader.readFrom(
+                FIND_BY_IDS.createQuery(session, consistency.txMode(), idsParams)
+        )).thenApply(result -> fetchIssues(result.getValue()));
     }
 
     public void saveAll(List<TitleAuthor> titleAuthors) {
+        await(saveAllAsync(titleAuthors));
+    }
+
+    public CompletableFuture<Void> saveAllAsync(List<TitleAuthor> titleAuthors) {
         var structType = StructType.of(
                 "id", PrimitiveType.Int64,
                 "title", PrimitiveType.Text,
@@ -62,108 +403,128 @@ public class IssueYdbRepository {
                 )).toList()
         ));
 
-        retryCtx.supplyResult(
-                session -> session.createQuery(
-                        """
-                                DECLARE $args AS List<Struct<
-                                id: Int64,
-                                title: Text,
-                                author: Text?, -- тут знак вопроса означает, что в Timestamp может быть передан NULL
-                                created_at: Timestamp,
-                                >>;
-
-                                UPSERT INTO issues
-                                SELECT * FROM AS_TABLE($args);
-                                """,
-                        TxMode.SERIALIZABLE_RW,
-                        listIssues
-                ).execute()
-        ).join().getStatus().expectSuccess("Failed upsert title");
+        return retryCtx.supplyResult(
+                session -> SAVE_ALL.createQuery(session, TxMode.SERIALIZABLE_RW, listIssues).execute()
+        ).thenAccept(result -> result.getStatus().expectSuccess("Failed upsert title"));
     }
 
     public void updateStatus(long id, String status) {
-        retryCtx.supplyResult(
-                session -> session.createQuery(
-                        """
-                                DECLARE $id AS Int64;
-                                DECLARE $new_status AS Text;
-                                                                    
-                                UPDATE issues SET status = $new_status WHERE id = $id;
-                                """,
+        await(updateStatusAsync(id, status));
+    }
+
+    public CompletableFuture<Void> updateStatusAsync(long id, String status) {
+        return retryCtx.supplyResult(
+                session -> UPDATE_STATUS.createQuery(
+                        session,
                         TxMode.SERIALIZABLE_RW,
                         Params.of("$id", PrimitiveValue.newInt64(id),
                                 "$new_status", PrimitiveValue.newText(status))
                 ).execute()
-        ).join().getStatus().expectSuccess();
+        ).thenAccept(result -> result.getStatus().expectSuccess());
+    }
+
+    /**
+     * Обновление статусов пачки тикетов одним запросом.
+     * Тикеты, которых нет в таблице, пропускаются, как и в updateStatus.
+     */
+    public CompletableFuture<Void> updateStatusesAsync(Map<Long, String> statuses) {
+        var structType = StructType.of(
+                "id", PrimitiveType.Int64,
+                "status", PrimitiveType.Text
+        );
+
+        var batch = Params.of("$batch", ListType.of(structType).newValue(
+                statuses.entrySet().stream().map(entry -> structType.newValue(
+                        "id", PrimitiveValue.newInt64(entry.getKey()),
+                        "status", PrimitiveValue.newText(entry.getValue())
+                )).toList()
+        ));
+
+        return retryCtx.supplyResult(
+                session -> UPDATE_STATUSES.createQuery(session, TxMode.SERIALIZABLE_RW, batch).execute()
+        ).thenAccept(result -> result.getStatus().expectSuccess("Failed update statuses"));
     }
 
     public List<IssueLinkCount> linkTicketsNoInteractive(long idT1, long idT2) {
-        var valueReader = retryCtx.supplyResult(
-                session -> QueryReader.readFrom(session.createQuery(
-                        """
-                                DECLARE $t1 AS Int64;
-                                DECLARE $t2 AS Int64;
-                                                                    
-                                UPDATE issues
-                                SET link_count = COALESCE(link_count, 0) + 1
-                                WHERE id IN ($t1, $t2);
-                                                                    
-                                INSERT INTO links (source, destination)
-                                VALUES ($t1, $t2), ($t2, $t1);
-
-                                SELECT id, link_count FROM issues
-                                WHERE id IN ($t1, $t2)
-                                """,
+        return await(linkTicketsNoInteractiveAsync(idT1, idT2));
+    }
+
+    public CompletableFuture<List<IssueLinkCount>> linkTicketsNoInteractiveAsync(long idT1, long idT2) {
+        return retryCtx.supplyResult(
+                session -> QueryReader.readFrom(LINK_TICKETS.createQuery(
+                        session,
                         TxMode.SERIALIZABLE_RW,
                         Params.of("$t1", PrimitiveValue.newInt64(idT1), "$t2", PrimitiveValue.newInt64(idT2))
                 ))
-        ).join().getValue();
+        ).thenApply(result -> getIssueLinkCount(result.getValue()));
+    }
+
+    /**
+     * Связывание множества пар тикетов. Пары делятся на пачки по {@link #LINK_BATCH_SIZE},
+     * каждая пачка целиком обрабатывается одним запросом: связи добавляются одним INSERT,
+     * а link_count каждого тикета увеличивается один раз на суммарное число его новых связей.
+     * <p>
+     * В отличие от {@link #linkTicketsNoInteractive(long, long)}, уже существующие связи пропускаются,
+     * поэтому повтор операции после сбоя не искажает счётчики.
+     */
+    public void linkTickets(List<LinkPair> pairs) {
+        for (int from = 0; from < pairs.size(); from += LINK_BATCH_SIZE) {
+            await(linkTicketsAsync(pairs.subList(from, Math.min(from + LINK_BATCH_SIZE, pairs.size()))));
+        }
+    }
+
+    /**
+     * Связывание пачки пар одной транзакцией. Размер пачки ограничивает вызывающий код.
+     */
+    public CompletableFuture<Void> linkTicketsAsync(List<LinkPair> pairs) {
+        var structType = StructType.of(
+                "t1", PrimitiveType.Int64,
+                "t2", PrimitiveType.Int64
+        );
 
-        return getIssueLinkCount(valueReader);
+        var params = Params.of("$pairs", ListType.of(structType).newValue(
+                pairs.stream().map(pair -> structType.newValue(
+                        "t1", PrimitiveValue.newInt64(pair.idT1()),
+                        "t2", PrimitiveValue.newInt64(pair.idT2())
+                )).toList()
+        ));
+
+        return retryCtx.supplyResult(
+                session -> LINK_TICKETS_BATCH.createQuery(session, TxMode.SERIALIZABLE_RW, params).execute()
+        ).thenAccept(result -> result.getStatus().expectSuccess("Failed link tickets"));
     }
 
     public List<IssueLinkCount> linkTicketsInteractive(long idT1, long idT2) {
+        return await(linkTicketsInteractiveAsync(idT1, idT2));
+    }
+
+    public CompletableFuture<List<IssueLinkCount>> linkTicketsInteractiveAsync(long idT1, long idT2) {
+        var params = Params.of("$t1", PrimitiveValue.newInt64(idT1), "$t2", PrimitiveValue.newInt64(idT2));
+
         return retryCtx.supplyResult(
                 session -> {
                     var tx = session.createNewTransaction(TxMode.SERIALIZABLE_RW);
 
-                    tx.createQuery("""
-                                    DECLARE $t1 AS Int64;
-                                    DECLARE $t2 AS Int64;
-                                                                 
-                                    UPDATE issues
-                                    SET link_count = COALESCE(link_count, 0) + 1
-                                    WHERE id IN ($t1, $t2);
-                                    """,
-                            Params.of("$t1", PrimitiveValue.newInt64(idT1), "$t2", PrimitiveValue.newInt64(idT2))
-                    ).execute().join().getStatus().expectSuccess();
-
-                    tx.createQuery("""
-                                    DECLARE $t1 AS Int64;
-                                    DECLARE $t2 AS Int64;
-                                                                        
-                                    INSERT INTO links (source, destination)
-                                    VALUES ($t1, $t2), ($t2, $t1);
-                                    """,
-                            Params.of("$t1", PrimitiveValue.newInt64(idT1), "$t2", PrimitiveValue.newInt64(idT2))
-                    ).execute().join().getStatus().expectSuccess();
-
-                    var valueReader = QueryReader.readFrom(
-                            tx.createQueryWithCommit("""
-                                            DECLARE $t1 AS Int64;
-                                            DECLARE $t2 AS Int64;
-                                                                                
-                                            SELECT id, link_count FROM issues
-                                            WHERE id IN ($t1, $t2)
-                                            """,
-                                    Params.of("$t1", PrimitiveValue.newInt64(idT1), "$t2", PrimitiveValue.newInt64(idT2)))
-                    ).join().getValue();
-
-                    var linkTicketPairs = getIssueLinkCount(valueReader);
-
-                    return CompletableFuture.completedFuture(Result.success(linkTicketPairs));
+                    // Запросы транзакции выполняются последовательно, но без блокировки потока:
+                    // следующий шаг запускается в колбэке завершения предыдущего.
+                    // Ошибка любого шага возвращается как Result, чтобы SessionRetryContext мог повторить транзакцию.
+                    return LINK_TICKETS_UPDATE_COUNTS.createQuery(tx, params).execute().thenCompose(updateResult -> {
+                        if (!updateResult.isSuccess()) {
+                            return CompletableFuture.completedFuture(Result.<List<IssueLinkCount>>fail(updateResult.getStatus()));
+                        }
+
+                        return LINK_TICKETS_INSERT_LINKS.createQuery(tx, params).execute().thenCompose(insertResult -> {
+                            if (!insertResult.isSuccess()) {
+                                return CompletableFuture.completedFuture(Result.<List<IssueLinkCount>>fail(insertResult.getStatus()));
+                            }
+
+                            return QueryReader.readFrom(
+                                    LINK_TICKETS_SELECT_COUNTS.createQueryWithCommit(tx, params)
+                            ).thenApply(result -> result.map(IssueYdbRepository::getIssueLinkCount));
+                        });
+                    });
                 }
-        ).join().getValue();
+        ).thenApply(Result::getValue);
     }
 
     public void addIssue(String title, String author) {
@@ -171,15 +532,8 @@ public class IssueYdbRepository {
         var now = Instant.now();
 
         retryCtx.supplyResult(
-                session -> session.createQuery(
-                        """
-                                DECLARE $id AS Int64;
-                                DECLARE $title AS Text;
-                                DECLARE $created_at AS Timestamp;
-                                DECLARE $author AS Text;
-                                UPSERT INTO issues (id, title, created_at, author)
-                                VALUES ($id, $title, $created_at, $author);
-                                """,
+                session -> ADD_ISSUE.createQuery(
+                        session,
                         TxMode.SERIALIZABLE_RW,
                         Params.of(
                                 "$id", PrimitiveValue.newInt64(id),
@@ -194,148 +548,363 @@ public class IssueYdbRepository {
     public List<Issue> findAll() {
         var resultSet = retryCtx.supplyResult(
                 session -> QueryReader.readFrom(
-                        session.createQuery("SELECT id, title, created_at, author, COALESCE(link_count, 0), status FROM issues;", TxMode.SNAPSHOT_RO)
+                        FIND_ALL.createQuery(session, TxMode.SNAPSHOT_RO)
                 )
         ).join().getValue();
 
         return fetchIssues(resultSet);
     }
 
+    /**
+     * Потоковое чтение всех тикетов без накопления результата в памяти.
+     * Каждая часть результата (result part) передаётся потребителю сразу после получения,
+     * следующая часть запрашивается у сервера только после обработки предыдущей,
+     * поэтому потребление памяти ограничено размером одной части независимо от размера таблицы.
+     * Строки читаются в порядке первичного ключа: при повторной попытке чтение продолжается
+     * с последнего переданного id, и потребитель не получает дубликатов.
+     */
+    public void findAll(Consumer<Issue> consumer) {
+        var lastId = new AtomicReference<Long>();
+
+        retryCtx.supplyStatus(
+                session -> createFindAllQuery(session, lastId.get())
+                        .execute(part -> readIssues(part.getResultSetReader(), issue -> {
+                            consumer.accept(issue);
+                            lastId.set(issue.id());
+                        }))
+                        .thenApply(Result::getStatus)
+        ).join().expectSuccess("Failed read issues");
+    }
+
+    /**
+     * Ленивый поток всех тикетов поверх findAll(Consumer).
+     * Между стримом запроса и потребителем находится очередь на одну часть результата,
+     * так что сервер не присылает новые данные, пока потребитель не разобрал уже полученные.
+     * Поток нужно закрывать (try-with-resources), чтобы прервать чтение, если он вычитан не до конца.
+     */
+    public Stream<Issue> streamAll() {
+        BlockingQueue<List<Issue>> parts = new ArrayBlockingQueue<>(1);
+        var currentStream = new AtomicReference<QueryStream>();
+        var error = new AtomicReference<Throwable>();
+        var lastId = new AtomicReference<Long>();
+        var closed = new AtomicBoolean();
+
+        retryCtx.supplyStatus(session -> {
+            var queryStream = createFindAllQuery(session, lastId.get());
+            currentStream.set(queryStream);
+
+            return queryStream.execute(part -> {
+                var issues = new ArrayList<Issue>();
+                readIssues(part.getResultSetReader(), issues::add);
+
+                if (!issues.isEmpty()) {
+                    putPart(parts, issues, closed);
+                    lastId.set(issues.get(issues.size() - 1).id());
+                }
+            }).thenApply(Result::getStatus);
+        }).whenComplete((status, th) -> {
+            if (th != null) {
+                error.set(th);
+            } else if (!status.isSuccess()) {
+                error.set(new RuntimeException("Failed read issues: " + status));
+            }
+
+            putPart(parts, END_OF_STREAM, closed);
+        });
+
+        var spliterator = new Spliterators.AbstractSpliterator<Issue>(Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.NONNULL) {
+            private List<Issue> current = List.of();
+            private int position = 0;
+
+            @Override
+            public boolean tryAdvance(Consumer<? super Issue> action) {
+                while (position >= current.size()) {
+                    if (current == END_OF_STREAM) {
+                        return false;
+                    }
+
+                    current = takePart(parts);
+                    position = 0;
+
+                    if (current == END_OF_STREAM && error.get() != null) {
+                        throw new RuntimeException(error.get());
+                    }
+                }
+
+                action.accept(current.get(position++));
+
+                return true;
+            }
+        };
+
+        return StreamSupport.stream(spliterator, false).onClose(() -> {
+            closed.set(true);
+
+            var queryStream = currentStream.get();
+            if (queryStream != null) {
+                queryStream.cancel();
+            }
+
+            parts.clear();
+        });
+    }
+
     public List<IssueTitle> findFutures() {
-        var queryReader = retryCtx.supplyResult(
+        return await(findFuturesAsync());
+    }
+
+    public CompletableFuture<List<IssueTitle>> findFuturesAsync() {
+        return retryCtx.supplyResult(
                 session -> QueryReader.readFrom(
-                        session.createQuery("""
-                                -- выбираем ID и заголовки задач, которые должны быть созданы в будущем
-                                $future =
-                                SELECT id, title
-                                FROM issues
-                                WHERE status = 'future';
-                                                                
-                                -- возвращаем их как результат запроса
-                                SELECT * FROM $future;
-                                                                
-                                -- и обновляем статус/время точно у этих же задач
-                                UPDATE issues ON
-                                                                
-                                SELECT id, CurrentUtcTimestamp() AS created_at, CAST('new' AS Utf8) AS status
-                                                                
-                                FROM $future
-                                """, TxMode.SERIALIZABLE_RW)
+                        FIND_FUTURES.createQuery(session, TxMode.SERIALIZABLE_RW)
                 )
-        ).join().getValue();
+        ).thenApply(result -> {
+            var linkTicketPairs = new ArrayList<IssueTitle>();
+            var resultSet = result.getValue().getResultSet(0);
 
-        var linkTicketPairs = new ArrayList<IssueTitle>();
-        var resultSet = queryReader.getResultSet(0);
+            while (resultSet.next()) {
+                linkTicketPairs.add(new IssueTitle(resultSet.getColumn(0).getInt64(), resultSet.getColumn(1).getText()));
+            }
 
-        while (resultSet.next()) {
-            linkTicketPairs.add(new IssueTitle(resultSet.getColumn(0).getInt64(), resultSet.getColumn(1).getText()));
-        }
-
-        return linkTicketPairs;
+            return linkTicketPairs;
+        });
     }
 
     public void deleteTasks(List<Long> ids) {
+        await(deleteTasksAsync(ids));
+    }
+
+    public CompletableFuture<Void> deleteTasksAsync(List<Long> ids) {
         var idsParam = ListType.of(PrimitiveType.Int64).newValue(
                 ids.stream().map(PrimitiveValue::newInt64).toList()
         );
 
-        retryCtx.supplyResult(
-                session -> session.createQuery(
-                        """
-                                -- принимаем id задач для удаления
-                                DECLARE $issues_ids_arg AS List<Int64>;
+        return retryCtx.supplyResult(
+                session -> DELETE_TASKS.createQuery(session, TxMode.SERIALIZABLE_RW, Params.of("$issues_ids_arg", idsParam)).execute()
+        ).thenAccept(result -> result.getStatus().expectSuccess("Failed upsert title"));
+    }
 
-                                -- это лямбда-функция для преобразования отдельного элемента списка в структуру
-                                $list_to_id_struct = ($id) -> { RETURN <|id:$id|>};
+    /**
+     * Все тикеты автора в порядке id.
+     */
+    public List<Issue> findByAuthor(String author) {
+        return findByAuthor(author, ReadConsistency.SNAPSHOT);
+    }
 
-                                -- тут удаляем из списка возможные дубли и преобразовываем список id в список структур
-                                $issue_ids_list = ListMap(ListUniq($issues_ids_arg), $list_to_id_struct);
+    public List<Issue> findByAuthor(String author, ReadConsistency consistency) {
+        var issues = new ArrayList<Issue>();
 
-                                -- внутри других запросов проще работать с результатом запроса к таблице,
-                                -- чтобы не помнить везде о том что это когда-то было списком структур или
-                                -- параметром
-                                $issues = SELECT id FROM AS_TABLE($issue_ids_list);
+        findByAuthor(author, consistency, issues::add);
 
+        return issues;
+    }
 
-                                -- выбираем связи этих задач
-                                $linked_issues =
-                                SELECT source, destination
+    /**
+     * Потоковое чтение всех тикетов автора через индекс authorIndex, см. {@link SchemaYdbRepository#createAuthorIndex()}.
+     * Как и в {@link #findAll(Consumer)}, части результата передаются потребителю по мере получения,
+     * а при повторной попытке чтение продолжается после id последнего переданного тикета.
+     * <p>
+     * Индекс хранит только author и id, поэтому для каждой строки выполняется чтение основной таблицы.
+     * Если нужны только заголовки, дешевле {@link #findTitlesByAuthor(String, Consumer)}.
+     */
+    public void findByAuthor(String author, ReadConsistency consistency, Consumer<Issue> consumer) {
+        var lastId = new AtomicReference<Long>();
+
+        retryCtx.supplyStatus(
+                session -> createAuthorQuery(session, consistency.txMode(), FIND_BY_AUTHOR, FIND_BY_AUTHOR_AFTER_ID, author, lastId.get())
+                        .execute(part -> readIssues(part.getResultSetReader(), issue -> {
+                            consumer.accept(issue);
+                            lastId.set(issue.id());
+                        }))
+                        .thenApply(Result::getStatus)
+        ).join().expectSuccess("Failed read issues by author");
+    }
 
-                                FROM links
+    /**
+     * Потоковое чтение id и заголовков тикетов автора только из покрывающего индекса authorTitleIndex,
+     * см. {@link SchemaYdbRepository#createAuthorTitleIndex()}. Основная таблица не читается.
+     */
+    public void findTitlesByAuthor(String author, Consumer<IssueTitle> consumer) {
+        var lastId = new AtomicReference<Long>();
+
+        retryCtx.supplyStatus(
+                session -> createAuthorQuery(session, TxMode.SNAPSHOT_RO, FIND_TITLES_BY_AUTHOR, FIND_TITLES_BY_AUTHOR_AFTER_ID, author, lastId.get())
+                        .execute(part -> {
+                            var resultSet = part.getResultSetReader();
+
+                            while (resultSet.next()) {
+                                var issueTitle = new IssueTitle(resultSet.getColumn(0).getInt64(), resultSet.getColumn(1).getText());
+                                consumer.accept(issueTitle);
+                                lastId.set(issueTitle.id());
+                            }
+                        })
+                        .thenApply(Result::getStatus)
+        ).join().expectSuccess("Failed read titles by author");
+    }
 
-                                WHERE source IN $issues;
+    /**
+     * Страница тикетов в порядке id. Для первой страницы pageToken равен null, для следующих -
+     * {@link IssuePage#nextPageToken()} предыдущей страницы.
+     * <p>
+     * Вместо OFFSET страница продолжается строго после id последней строки предыдущей страницы,
+     * поэтому сервер читает не больше pageSize + 1 строк, как бы далеко ни листал пользователь.
+     * Каждая страница читается отдельной транзакцией: тикеты, добавленные между запросами страниц,
+     * попадут в выдачу, если их id больше уже пройденных.
+     */
+    public IssuePage findAllPage(int pageSize, String pageToken) {
+        var params = pageParams(pageSize);
+        var statement = FIND_PAGE_FIRST;
+
+        if (pageToken != null) {
+            var token = IssuePageToken.decode(pageToken, IssuePageToken.Kind.ALL, null);
+            params.put("$last_id", PrimitiveValue.newInt64(token.lastId()));
+            statement = FIND_PAGE_AFTER_ID;
+        }
 
+        return readPage(statement, params, pageSize, IssuePageToken.Kind.ALL, null);
+    }
 
-                                -- и связи в обратную сторону
-                                $linked_issues_mirrored =
-                                SELECT destination AS source, source AS destination
-                                FROM $linked_issues;
+    /**
+     * Страница тикетов автора в порядке id, см. {@link #findAllPage(int, String)}.
+     * Читается через индекс authorIndex, см. {@link SchemaYdbRepository#createAuthorIndex()}.
+     */
+    public IssuePage findByAuthorPage(String author, int pageSize, String pageToken) {
+        var params = pageParams(pageSize);
+        params.put("$author", PrimitiveValue.newText(author));
+        var statement = FIND_BY_AUTHOR_PAGE_FIRST;
+
+        if (pageToken != null) {
+            var token = IssuePageToken.decode(pageToken, IssuePageToken.Kind.BY_AUTHOR, author);
+            params.put("$last_id", PrimitiveValue.newInt64(token.lastId()));
+            statement = FIND_BY_AUTHOR_PAGE_AFTER_ID;
+        }
 
+        return readPage(statement, params, pageSize, IssuePageToken.Kind.BY_AUTHOR, author);
+    }
 
-                                $mirrored_dec_map =
-                                SELECT source AS id, COUNT(*) AS cnt
-                                FROM $linked_issues_mirrored
+    /**
+     * id тикетов, заголовки которых содержат все слова запроса. Ответ строится по индексу в памяти
+     * процесса без обращения к таблице, поэтому может отставать от issues на задержку changefeed.
+     * Сами тикеты можно прочитать через {@link #findByIds(List)}.
+     */
+    public List<Long> searchByTitle(String query) {
+        if (titleIndex == null) {
+            throw new IllegalStateException("Title index is not configured");
+        }
 
-                                GROUP BY source;
+        return titleIndex.search(query);
+    }
 
+    /**
+     * Число тикетов с заданным статусом. Читается одна строка таблицы, которую поддерживает
+     * {@link IssueCountsProjector}, поэтому значение может отставать от issues на задержку changefeed.
+     */
+    public long countByStatus(String status) {
+        return readCount(COUNT_BY_STATUS, Params.of("$status", PrimitiveValue.newText(status)));
+    }
 
-                                -- именованные выражения это просто подстановка запросов, т.е. промежуточного сохранения данных не происходит
-                                -- поэтому важно выполнять запросы в таком порядке, чтобы данные, на которые опирается выражение ещё не были испорчены
-                                -- к моменту его выполнения, проще всего идти с конца
+    /**
+     * Число тикетов заданного автора, см. {@link #countByStatus(String)}.
+     */
+    public long countByAuthor(String author) {
+        return readCount(COUNT_BY_AUTHOR, Params.of("$author", PrimitiveValue.newText(author)));
+    }
 
-                                -- сначала обновляем счётчики у связанных тикетов
-                                UPDATE issues ON
+    private long readCount(YqlStatement statement, Params params) {
+        var resultSet = retryCtx.supplyResult(
+                session -> QueryReader.readFrom(statement.createQuery(session, TxMode.SNAPSHOT_RO, params))
+        ).join().getValue().getResultSet(0);
 
-                                SELECT i.id AS id, i.link_count - d.cnt AS link_count
+        return resultSet.next() ? resultSet.getColumn(0).getInt64() : 0;
+    }
+
+    private static QueryStream createAuthorQuery(
+            QuerySession session,
+            TxMode txMode,
+            YqlStatement first,
+            YqlStatement afterId,
+            String author,
+            Long lastId
+    ) {
+        if (lastId == null) {
+            return first.createQuery(session, txMode, Params.of("$author", PrimitiveValue.newText(author)));
+        }
 
-                                FROM $mirrored_dec_map AS d JOIN issues AS i ON d.id = i.id;
+        return afterId.createQuery(session, txMode, Params.of(
+                "$author", PrimitiveValue.newText(author),
+                "$last_id", PrimitiveValue.newInt64(lastId)
+        ));
+    }
+
+    /**
+     * Ожидание асинхронного вызова в синхронных методах. Ошибка пробрасывается как есть,
+     * без обёртки CompletionException, например UnexpectedResultException при неуспешном статусе запроса.
+     */
+    private static <T> T await(CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+
+            throw e;
+        }
+    }
 
+    private static Params pageParams(int pageSize) {
+        if (pageSize <= 0) {
+            throw new IllegalArgumentException("Page size must be positive: " + pageSize);
+        }
 
-                                -- теперь обновляем счётчики у переданных тикетов
-                                UPDATE issues
-                                SET link_count=link_count-1
+        // Одна лишняя строка показывает, есть ли следующая страница, без дополнительного запроса
+        return Params.create().put("$limit", PrimitiveValue.newUint64(pageSize + 1L));
+    }
 
-                                WHERE id IN $issues;
+    private IssuePage readPage(YqlStatement statement, Params params, int pageSize, IssuePageToken.Kind kind, String author) {
+        var issues = await(retryCtx.supplyResult(
+                session -> QueryReader.readFrom(statement.createQuery(session, TxMode.SNAPSHOT_RO, params))
+        ).thenApply(result -> fetchIssues(result.getValue())));
 
+        if (issues.size() <= pageSize) {
+            return new IssuePage(issues, null);
+        }
 
-                                -- и удаляем сами тикеты
-                                -- если тикеты удалить раньше, то
-                                DELETE FROM issues
+        var page = issues.subList(0, pageSize);
+        var lastId = page.get(pageSize - 1).id();
 
-                                WHERE id IN $issues;
-                                """,
-                        TxMode.SERIALIZABLE_RW,
-                        Params.of("$issues_ids_arg", idsParam)
-                ).execute()
-        ).join().getStatus().expectSuccess("Failed upsert title");
+        return new IssuePage(List.copyOf(page), new IssuePageToken(kind, author, lastId).encode());
     }
 
-    public Issue findByAuthor(String author) {
-        var resultSet = retryCtx.supplyResult(
-                session -> QueryReader.readFrom(
-                        session.createQuery(
-                                """
-                                        DECLARE $author AS Text;
-                                        SELECT id, title, created_at, author, COALESCE(link_count, 0), status FROM issues
-                                        WHERE author = $author;
-                                        """,
-                                TxMode.SNAPSHOT_RO,
-                                Params.of("$author", PrimitiveValue.newText(author))
-                        )
-                )
-        ).join().getValue();
+    private static QueryStream createFindAllQuery(QuerySession session, Long lastId) {
+        if (lastId == null) {
+            return FIND_ALL_ORDERED.createQuery(session, TxMode.SNAPSHOT_RO);
+        }
 
-        var resultSetReader = resultSet.getResultSet(0);
-        resultSetReader.next();
+        return FIND_ALL_AFTER_ID.createQuery(session, TxMode.SNAPSHOT_RO, Params.of("$last_id", PrimitiveValue.newInt64(lastId)));
+    }
 
-        return new Issue(
-                resultSetReader.getColumn(0).getInt64(),
-                resultSetReader.getColumn(1).getText(),
-                resultSetReader.getColumn(2).getTimestamp(),
-                resultSetReader.getColumn(3).getText(),
-                resultSetReader.getColumn(4).getInt64(),
-                resultSetReader.getColumn(5).getText()
-        );
+    private static void putPart(BlockingQueue<List<Issue>> parts, List<Issue> part, AtomicBoolean closed) {
+        try {
+            // ждём, пока потребитель освободит место, но не дольше, чем поток открыт
+            while (!closed.get() && !parts.offer(part, 100, TimeUnit.MILLISECONDS)) {
+                // backpressure: следующая часть не будет запрошена у сервера, пока эта не принята
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static List<Issue> takePart(BlockingQueue<List<Issue>> parts) {
+        try {
+            return parts.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+
+            throw new RuntimeException(e);
+        }
     }
 
     private static List<IssueLinkCount> getIssueLinkCount(QueryReader valueReader) {
@@ -351,10 +920,14 @@ public class IssueYdbRepository {
     private static List<Issue> fetchIssues(QueryReader queryReader) {
         var issues = new ArrayList<Issue>();
 
-        var resultSetReader = queryReader.getResultSet(0);
+        readIssues(queryReader.getResultSet(0), issues::add);
+
+        return issues;
+    }
 
+    private static void readIssues(ResultSetReader resultSetReader, Consumer<Issue> consumer) {
         while (resultSetReader.next()) {
-            issues.add(new Issue(
+            consumer.accept(new Issue(
                     resultSetReader.getColumn(0).getInt64(),
                     resultSetReader.getColumn(1).getText(),
                     resultSetReader.getColumn(2).getTimestamp(),
@@ -363,7 +936,5 @@ public class IssueYdbRepository {
                     resultSetReader.getColumn(5).getText()
             ));
         }
-
-        return issues;
     }
 }
@@ -1,14 +1,25 @@
 package tech.ydb.app;
 
+import java.math.BigInteger;
 import java.time.Instant;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
 
 import tech.ydb.core.Result;
+import tech.ydb.core.Status;
 import tech.ydb.table.SessionRetryContext;
+import tech.ydb.table.description.KeyBound;
+import tech.ydb.table.description.KeyRange;
 import tech.ydb.table.result.ResultSetReader;
+import tech.ydb.table.settings.DescribeTableSettings;
 import tech.ydb.table.settings.ReadRowsSettings;
 import tech.ydb.table.settings.ReadTableSettings;
 import tech.ydb.table.values.ListType;
@@ -16,11 +27,14 @@ import tech.ydb.table.values.OptionalType;
 import tech.ydb.table.values.PrimitiveType;
 import tech.ydb.table.values.PrimitiveValue;
 import tech.ydb.table.values.StructType;
+import tech.ydb.table.values.TupleValue;
 
 /**
  * @author Kirill Kurdyukov
  */
 public class KeyValueApiYdbRepository {
+    // Максимальное число ключей в одном запросе readRows
+    private static final int READ_ROWS_BATCH_SIZE = 1000;
 
     private final SessionRetryContext retryTableCtx;
 
@@ -30,8 +44,20 @@ public class KeyValueApiYdbRepository {
 
     /**
      * Массовое добавление или обновление тикетов в таблице.
+     * Данные разбиваются на пачки ограниченного размера, которые отправляются параллельно,
+     * см. {@link BulkUpsertLoader}.
      */
     public void bulkUpsert(String tableName, List<TitleAuthor> titleAuthorList) {
+        try (var loader = new BulkUpsertLoader(this, tableName)) {
+            titleAuthorList.forEach(loader::add);
+        }
+    }
+
+    /**
+     * Отправка одной пачки тикетов одним запросом BulkUpsert.
+     * Повторные попытки выполняются только для этой пачки, не затрагивая остальные.
+     */
+    public CompletableFuture<Status> bulkUpsertAsync(String tableName, List<IssueRow> rows) {
 
         // Описывает структуру с полями, которые будут добавляться в таблицу.
         // Смысл операции тот же что для запроса UPSERT. Поля первичного ключа - обязательные, 
@@ -45,17 +71,16 @@ public class KeyValueApiYdbRepository {
         );
 
         var listIssues = ListType.of(structType).newValue(
-                titleAuthorList.stream().map(issue -> structType.newValue(
-                        "id", PrimitiveValue.newInt64(ThreadLocalRandom.current().nextLong()),
-                        "title", PrimitiveValue.newText(issue.title()),
-                        "author", PrimitiveValue.newText(issue.author()),
+                rows.stream().map(row -> structType.newValue(
+                        "id", PrimitiveValue.newInt64(row.id()),
+                        "title", PrimitiveValue.newText(row.titleAuthor().title()),
+                        "author", PrimitiveValue.newText(row.titleAuthor().author()),
                         "created_at", OptionalType.of(PrimitiveType.Timestamp)
                                 .newValue(PrimitiveValue.newTimestamp(Instant.now()))
                 )).toList()
         );
 
-        retryTableCtx.supplyStatus(session -> session.executeBulkUpsert(tableName, listIssues))
-                .join().expectSuccess();
+        return retryTableCtx.supplyStatus(session -> session.executeBulkUpsert(tableName, listIssues));
     }
 
     /**
@@ -71,7 +96,7 @@ public class KeyValueApiYdbRepository {
                                     readTablePart -> {
                                         var resultSetReader = readTablePart.getResultSetReader();
 
-                                        fetchIssues(listResult, resultSetReader);
+                                        fetchIssues(resultSetReader, listResult::add);
                                     }
                             ).join().expectSuccess();
 
@@ -81,6 +106,94 @@ public class KeyValueApiYdbRepository {
         ).join().getValue();
     }
 
+    /**
+     * Параллельное чтение всей таблицы.
+     * Диапазон первичного ключа делится на parallelism шардов: по границам партиций таблицы,
+     * объединяя соседние партиции, а если партиций меньше, чем parallelism, то на равные отрезки диапазона Int64.
+     * Каждый шард читается своим потоком ReadTable в отдельной сессии, и все строки передаются в sink,
+     * который поэтому должен быть потокобезопасным. Порядок строк между шардами не гарантируется.
+     * Шард читается в порядке ключа, и повторная попытка продолжает его чтение после последнего
+     * переданного id, так что sink не получает дубликатов.
+     */
+    public void readTableParallel(String tableName, int parallelism, Consumer<Issue> sink) {
+        if (parallelism <= 0) {
+            throw new IllegalArgumentException("Parallelism must be positive: " + parallelism);
+        }
+
+        var shards = splitKeyRange(tableName, parallelism);
+
+        var futures = shards.stream()
+                .map(shard -> readShard(tableName, shard, sink))
+                .toArray(CompletableFuture[]::new);
+
+        CompletableFuture.allOf(futures).join();
+    }
+
+    private CompletableFuture<Void> readShard(String tableName, KeyRange shard, Consumer<Issue> sink) {
+        var lastId = new AtomicReference<Long>();
+
+        return retryTableCtx.supplyStatus(session -> {
+            var settings = ReadTableSettings.newBuilder().orderedRead(true);
+
+            if (lastId.get() != null) {
+                settings.fromKeyExclusive(TupleValue.of(PrimitiveValue.newInt64(lastId.get())));
+            } else if (shard.getFrom().isPresent()) {
+                var from = shard.getFrom().get();
+                settings.fromKey((TupleValue) from.getValue(), from.isInclusive());
+            }
+
+            shard.getTo().ifPresent(to -> settings.toKey((TupleValue) to.getValue(), to.isInclusive()));
+
+            return session.executeReadTable(tableName, settings.build())
+                    .start(readTablePart -> fetchIssues(readTablePart.getResultSetReader(), issue -> {
+                        sink.accept(issue);
+                        lastId.set(issue.id());
+                    }));
+        }).thenAccept(status -> status.expectSuccess("Failed read shard " + shard));
+    }
+
+    private List<KeyRange> splitKeyRange(String tableName, int parallelism) {
+        var describeSettings = new DescribeTableSettings();
+        describeSettings.setIncludeShardKeyBounds(true);
+
+        var description = retryTableCtx.supplyResult(session -> session.describeTable(tableName, describeSettings))
+                .join().getValue();
+
+        var partitions = description.getKeyRanges();
+        if (partitions.size() >= parallelism) {
+            // Партиций больше, чем потоков: объединяем соседние партиции в parallelism шардов,
+            // чтобы одновременно выполнялось не больше parallelism чтений
+            var shards = new ArrayList<KeyRange>();
+            for (int i = 0; i < parallelism; i++) {
+                var first = partitions.get(i * partitions.size() / parallelism);
+                var last = partitions.get((i + 1) * partitions.size() / parallelism - 1);
+
+                shards.add(new KeyRange(first.getFrom(), last.getTo()));
+            }
+
+            return shards;
+        }
+
+        // Партиций мало: делим весь диапазон Int64 на равные части,
+        // id тикетов генерируются случайно и распределены по нему равномерно
+        var shards = new ArrayList<KeyRange>();
+        var step = BigInteger.TWO.pow(64).divide(BigInteger.valueOf(parallelism));
+        var bound = BigInteger.valueOf(Long.MIN_VALUE);
+
+        Optional<KeyBound> from = Optional.empty();
+        for (int i = 0; i < parallelism; i++) {
+            bound = bound.add(step);
+
+            Optional<KeyBound> to = i == parallelism - 1
+                    ? Optional.empty()
+                    : Optional.of(KeyBound.exclusive(TupleValue.of(PrimitiveValue.newInt64(bound.longValue()))));
+            shards.add(new KeyRange(from, to));
+            from = to.map(b -> KeyBound.inclusive(b.getValue()));
+        }
+
+        return shards;
+    }
+
     /**
      * Чтение данных из таблицы по ключу.
      * Использует readRows для получения записей по конкретному id.
@@ -98,18 +211,51 @@ public class KeyValueApiYdbRepository {
                                     .build()
                     ).join().getValue().getResultSetReader();
 
-                    fetchIssues(listResult, resultSetReader);
+                    fetchIssues(resultSetReader, listResult::add);
 
                     return CompletableFuture.completedFuture(Result.success(listResult));
                 }
         ).join().getValue();
     }
 
+    /**
+     * Чтение данных из таблицы по набору ключей.
+     * Ключи упаковываются в запросы readRows пачками по READ_ROWS_BATCH_SIZE штук,
+     * а пачки выполняются параллельно, поэтому страница из сотен тикетов читается
+     * за один-два сетевых запроса вместо запроса на каждый ключ.
+     * Возвращает найденные тикеты по их id; отсутствующих в таблице id в результате нет.
+     */
+    public Map<Long, Issue> readRows(String tableName, Collection<Long> ids) {
+        var keyStruct = StructType.of("id", PrimitiveType.Int64);
+        var uniqueIds = new ArrayList<>(new LinkedHashSet<>(ids));
+        var result = new ConcurrentHashMap<Long, Issue>();
+
+        var futures = new ArrayList<CompletableFuture<Void>>();
+        for (int from = 0; from < uniqueIds.size(); from += READ_ROWS_BATCH_SIZE) {
+            var batch = uniqueIds.subList(from, Math.min(from + READ_ROWS_BATCH_SIZE, uniqueIds.size()));
+
+            var settings = ReadRowsSettings.newBuilder()
+                    .addColumns("id", "title", "created_at", "author");
+            batch.forEach(id -> settings.addKey(keyStruct.newValue("id", PrimitiveValue.newInt64(id))));
+            var readRowsSettings = settings.build();
+
+            futures.add(retryTableCtx.supplyResult(session -> session.readRows(tableName, readRowsSettings))
+                    .thenAccept(readRowsResult -> fetchIssues(
+                            readRowsResult.getValue().getResultSetReader(),
+                            issue -> result.put(issue.id(), issue)
+                    )));
+        }
+
+        CompletableFuture.allOf(futures.toArray(CompletableFuture[]::new)).join();
+
+        return result;
+    }
+
     /**
      * Вспомогательный метод для преобразования результатов запроса в объекты Issue.
      * Обрабатывает различные варианты структуры данных (с link_count и status или без них).
      */
-    private void fetchIssues(ArrayList<Issue> listResult, ResultSetReader resultSetReader) {
+    private static void fetchIssues(ResultSetReader resultSetReader, Consumer<Issue> sink) {
         while (resultSetReader.next()) {
             var id = resultSetReader.getColumn(0).getInt64();
 
@@ -127,7 +273,7 @@ public class KeyValueApiYdbRepository {
                 status = "";
             }
 
-            listResult.add(
+            sink.accept(
                     new Issue(
                             id,
                             resultSetReader.getColumn(1).getText(),
@@ -0,0 +1,70 @@
+package tech.ydb.app;
+
+import java.time.Duration;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Фоновый перенос строк-шардов issue_link_counters в issues.link_count, см. {@link ShardedLinkCounterRepository}.
+ * <p>
+ * Проход выполняется раз в interval; следующий проход запускается только после завершения предыдущего.
+ * Ошибка прохода логируется и не останавливает компактор - необработанные строки попадут в следующий проход.
+ *
+ * @author Kirill Kurdyukov
+ */
+public class LinkCountCompactor implements AutoCloseable {
+    private static final Logger LOGGER = LoggerFactory.getLogger(LinkCountCompactor.class);
+
+    private final ShardedLinkCounterRepository repository;
+    private final int batchSize;
+    private final long intervalNanos;
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        var thread = new Thread(runnable, "link-count-compactor");
+        thread.setDaemon(true);
+
+        return thread;
+    });
+
+    public LinkCountCompactor(ShardedLinkCounterRepository repository, int batchSize, Duration interval) {
+        this.repository = repository;
+        this.batchSize = batchSize;
+        this.intervalNanos = interval.toNanos();
+    }
+
+    public void start() {
+        scheduler.scheduleWithFixedDelay(this::compact, intervalNanos, intervalNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Останавливает фоновые проходы и выполняет последний, чтобы в issue_link_counters не осталось строк.
+     */
+    @Override
+    public void close() {
+        scheduler.shutdown();
+
+        try {
+            scheduler.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+
+            throw new RuntimeException(e);
+        }
+
+        compact();
+    }
+
+    private void compact() {
+        try {
+            var compacted = repository.compact(batchSize);
+
+            if (compacted > 0) {
+                LOGGER.info("Compacted link counters of {} issues", compacted);
+            }
+        } catch (RuntimeException e) {
+            LOGGER.warn("Failed to compact link counters: {}", e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,9 @@
+package tech.ydb.app;
+
+/**
+ * Пара тикетов, которые нужно связать друг с другом
+ *
+ * @author Kirill Kurdyukov
+ */
+public record LinkPair(long idT1, long idT2) {
+}
@@ -0,0 +1,121 @@
+package tech.ydb.app;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import tech.ydb.core.grpc.GrpcTransport;
+import tech.ydb.query.QueryClient;
+import tech.ydb.query.tools.SessionRetryContext;
+
+/**
+ * Сравнение пропускной способности связывания тикетов:
+ * по одной паре на транзакцию через linkTicketsNoInteractive и пачками через linkTickets.
+ * <p>
+ * Для каждого способа схема создаётся заново, и связывается один и тот же набор случайных пар.
+ * После прогона проверяется, что сумма link_count равна удвоенному числу пар.
+ * <p>
+ * Запуск: {@code LinkTicketsBenchmark [pairs] [issues]}
+ *
+ * @author Kirill Kurdyukov
+ */
+public class LinkTicketsBenchmark {
+    private static final Logger LOGGER = LoggerFactory.getLogger(LinkTicketsBenchmark.class);
+    private static final String CONNECTION_STRING = "grpc://localhost:2136/local";
+    private static final int SAVE_BATCH_SIZE = 1000;
+
+    public static void main(String[] args) {
+        var pairsCount = args.length > 0 ? Integer.parseInt(args[0]) : 10_000;
+        var issuesCount = args.length > 1 ? Integer.parseInt(args[1]) : 10_000;
+
+        try (GrpcTransport grpcTransport = GrpcTransport
+                .forConnectionString(CONNECTION_STRING)
+                .withConnectTimeout(Duration.ofSeconds(10))
+                .build();
+             QueryClient queryClient = QueryClient.newClient(grpcTransport).build()
+        ) {
+            var retryCtx = SessionRetryContext.create(queryClient).build();
+
+            var schemaYdbRepository = new SchemaYdbRepository(retryCtx);
+            var issueYdbRepository = new IssueYdbRepository(retryCtx);
+
+            run("pairwise", schemaYdbRepository, issueYdbRepository, issuesCount, pairsCount,
+                    pairs -> pairs.forEach(pair -> issueYdbRepository.linkTicketsNoInteractive(pair.idT1(), pair.idT2())));
+            run("batch", schemaYdbRepository, issueYdbRepository, issuesCount, pairsCount,
+                    issueYdbRepository::linkTickets);
+
+            YqlStatement.logStats();
+        }
+    }
+
+    private static void run(
+            String name,
+            SchemaYdbRepository schemaYdbRepository,
+            IssueYdbRepository issueYdbRepository,
+            int issuesCount,
+            int pairsCount,
+            Consumer<List<LinkPair>> linker
+    ) {
+        schemaYdbRepository.dropSchema();
+        schemaYdbRepository.createSchema();
+
+        var titleAuthors = new ArrayList<TitleAuthor>();
+        for (int i = 0; i < issuesCount; i++) {
+            titleAuthors.add(new TitleAuthor("Ticket " + i, "Author " + i % 10));
+
+            if (titleAuthors.size() == SAVE_BATCH_SIZE) {
+                issueYdbRepository.saveAll(titleAuthors);
+                titleAuthors.clear();
+            }
+        }
+        if (!titleAuthors.isEmpty()) {
+            issueYdbRepository.saveAll(titleAuthors);
+        }
+
+        var ids = new ArrayList<Long>();
+        issueYdbRepository.findAll(issue -> ids.add(issue.id()));
+
+        var pairs = randomPairs(ids, pairsCount);
+
+        var start = System.nanoTime();
+        linker.accept(pairs);
+        var elapsedSeconds = (System.nanoTime() - start) / 1_000_000_000.0;
+
+        var totalLinkCount = new AtomicLong();
+        issueYdbRepository.findAll(issue -> totalLinkCount.addAndGet(issue.linkCounts()));
+
+        LOGGER.info("{}: {} pairs in {} s, {} pairs/s, total link_count = {} (expected {})",
+                name,
+                pairs.size(),
+                String.format("%.2f", elapsedSeconds),
+                Math.round(pairs.size() / elapsedSeconds),
+                totalLinkCount.get(),
+                2L * pairs.size()
+        );
+    }
+
+    // Различные неупорядоченные пары различных тикетов: так оба способа дают одинаковый результат
+    private static List<LinkPair> randomPairs(List<Long> ids, int count) {
+        var random = ThreadLocalRandom.current();
+        var seen = new HashSet<LinkPair>();
+        var pairs = new ArrayList<LinkPair>(count);
+
+        while (pairs.size() < count) {
+            var first = ids.get(random.nextInt(ids.size()));
+            var second = ids.get(random.nextInt(ids.size()));
+
+            if (first.equals(second) || !seen.add(new LinkPair(Math.min(first, second), Math.max(first, second)))) {
+                continue;
+            }
+
+            pairs.add(new LinkPair(first, second));
+        }
+
+        return pairs;
+    }
+}
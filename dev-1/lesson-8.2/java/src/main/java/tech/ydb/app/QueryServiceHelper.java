@@ -1,6 +1,9 @@
 package tech.ydb.app;
 
+import java.util.concurrent.CompletableFuture;
+
 import tech.ydb.common.transaction.TxMode;
+import tech.ydb.core.Result;
 import tech.ydb.query.tools.QueryReader;
 import tech.ydb.query.tools.SessionRetryContext;
 import tech.ydb.table.query.Params;
@@ -23,14 +26,22 @@ public class QueryServiceHelper {
     }
 
     public void executeQuery(String yql) {
-        retryCtx.supplyResult(
-                session -> QueryReader.readFrom(session.createQuery(yql, TxMode.NONE))
-        ).join().getValue();
+        executeQueryAsync(yql).join();
     }
 
     public QueryReader executeQuery(String yql, TxMode txMode, Params params) {
+        return executeQueryAsync(yql, txMode, params).join();
+    }
+
+    public CompletableFuture<Void> executeQueryAsync(String yql) {
+        return retryCtx.supplyResult(
+                session -> QueryReader.readFrom(session.createQuery(yql, TxMode.NONE))
+        ).thenAccept(Result::getValue);
+    }
+
+    public CompletableFuture<QueryReader> executeQueryAsync(String yql, TxMode txMode, Params params) {
         return retryCtx.supplyResult(
                 session -> QueryReader.readFrom(session.createQuery(yql, txMode, params))
-        ).join().getValue();
+        ).thenApply(Result::getValue);
     }
 }
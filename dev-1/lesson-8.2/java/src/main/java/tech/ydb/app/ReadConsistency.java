@@ -0,0 +1,27 @@
+package tech.ydb.app;
+
+import tech.ydb.common.transaction.TxMode;
+
+/**
+ * Уровень согласованности для читающих запросов репозитория.
+ *
+ * @author Kirill Kurdyukov
+ */
+public enum ReadConsistency {
+    // Строгая согласованность: чтение берёт блокировки и конкурирует с пишущими транзакциями
+    SERIALIZABLE(TxMode.SERIALIZABLE_RW),
+    // Согласованный снимок базы на момент начала транзакции, без блокировок
+    SNAPSHOT(TxMode.SNAPSHOT_RO),
+    // Данные могут немного отставать, зато чтение может обслужить любая реплика
+    STALE(TxMode.STALE_RO);
+
+    private final TxMode txMode;
+
+    ReadConsistency(TxMode txMode) {
+        this.txMode = txMode;
+    }
+
+    public TxMode txMode() {
+        return txMode;
+    }
+}
@@ -0,0 +1,128 @@
+package tech.ydb.app;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import tech.ydb.core.grpc.GrpcTransport;
+import tech.ydb.query.QueryClient;
+import tech.ydb.query.tools.SessionRetryContext;
+
+/**
+ * Сравнение задержек findByIds при разных уровнях согласованности.
+ * Пока читатели выполняют findByIds, фоновые писатели непрерывно вызывают updateStatus для тех же тикетов.
+ * Для каждого уровня печатаются p50 и p99 задержки чтения.
+ * <p>
+ * Запуск: {@code ReadConsistencyBenchmark [seconds per mode] [reader threads] [writer threads]}
+ *
+ * @author Kirill Kurdyukov
+ */
+public class ReadConsistencyBenchmark {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ReadConsistencyBenchmark.class);
+    private static final String CONNECTION_STRING = "grpc://localhost:2136/local";
+    private static final int ISSUES_COUNT = 1000;
+    private static final int IDS_PER_READ = 10;
+
+    public static void main(String[] args) throws InterruptedException {
+        var seconds = args.length > 0 ? Integer.parseInt(args[0]) : 10;
+        var readers = args.length > 1 ? Integer.parseInt(args[1]) : 8;
+        var writers = args.length > 2 ? Integer.parseInt(args[2]) : 8;
+
+        try (GrpcTransport grpcTransport = GrpcTransport
+                .forConnectionString(CONNECTION_STRING)
+                .withConnectTimeout(Duration.ofSeconds(10))
+                .build();
+             QueryClient queryClient = QueryClient.newClient(grpcTransport).build()
+        ) {
+            var retryCtx = SessionRetryContext.create(queryClient).build();
+
+            var schemaYdbRepository = new SchemaYdbRepository(retryCtx);
+            var issueYdbRepository = new IssueYdbRepository(retryCtx);
+
+            schemaYdbRepository.dropSchema();
+            schemaYdbRepository.createSchema();
+
+            var titleAuthors = new ArrayList<TitleAuthor>();
+            for (int i = 0; i < ISSUES_COUNT; i++) {
+                titleAuthors.add(new TitleAuthor("Ticket " + i, "Author " + i % 10));
+            }
+            issueYdbRepository.saveAll(titleAuthors);
+
+            var ids = new ArrayList<Long>();
+            issueYdbRepository.findAll(issue -> ids.add(issue.id()));
+
+            for (var consistency : ReadConsistency.values()) {
+                run(issueYdbRepository, consistency, ids, seconds, readers, writers);
+            }
+        }
+    }
+
+    private static void run(
+            IssueYdbRepository issueYdbRepository,
+            ReadConsistency consistency,
+            List<Long> ids,
+            int seconds,
+            int readers,
+            int writers
+    ) throws InterruptedException {
+        var stopped = new AtomicBoolean();
+        var latencies = Collections.synchronizedList(new ArrayList<Long>());
+        ExecutorService executor = Executors.newFixedThreadPool(readers + writers);
+
+        for (int i = 0; i < writers; i++) {
+            executor.submit(() -> {
+                while (!stopped.get()) {
+                    var id = ids.get(ThreadLocalRandom.current().nextInt(ids.size()));
+                    issueYdbRepository.updateStatus(id, "status-" + ThreadLocalRandom.current().nextInt(10));
+                }
+            });
+        }
+
+        for (int i = 0; i < readers; i++) {
+            executor.submit(() -> {
+                var random = ThreadLocalRandom.current();
+
+                while (!stopped.get()) {
+                    var readIds = new ArrayList<Long>();
+                    for (int j = 0; j < IDS_PER_READ; j++) {
+                        readIds.add(ids.get(random.nextInt(ids.size())));
+                    }
+
+                    var start = System.nanoTime();
+                    issueYdbRepository.findByIds(readIds, consistency);
+                    latencies.add(System.nanoTime() - start);
+                }
+            });
+        }
+
+        TimeUnit.SECONDS.sleep(seconds);
+        stopped.set(true);
+        executor.shutdown();
+        executor.awaitTermination(1, TimeUnit.MINUTES);
+
+        var sorted = new ArrayList<>(latencies);
+        Collections.sort(sorted);
+
+        LOGGER.info("{}: {} reads, p50 = {} us, p99 = {} us",
+                consistency,
+                sorted.size(),
+                percentile(sorted, 0.50) / 1000,
+                percentile(sorted, 0.99) / 1000
+        );
+    }
+
+    private static long percentile(List<Long> sorted, double p) {
+        if (sorted.isEmpty()) {
+            return 0;
+        }
+
+        return sorted.get(Math.min(sorted.size() - 1, (int) Math.ceil(p * sorted.size()) - 1));
+    }
+}
@@ -1,65 +1,233 @@
 package tech.ydb.app;
 
+import java.util.ArrayList;
 import java.util.List;
-import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import tech.ydb.topic.TopicClient;
-import tech.ydb.topic.read.SyncReader;
+import tech.ydb.topic.read.AsyncReader;
+import tech.ydb.topic.read.Message;
+import tech.ydb.topic.read.events.AbstractReadEventHandler;
+import tech.ydb.topic.read.events.DataReceivedEvent;
+import tech.ydb.topic.read.events.PartitionSessionClosedEvent;
+import tech.ydb.topic.read.events.StartPartitionSessionEvent;
+import tech.ydb.topic.read.events.StopPartitionSessionEvent;
+import tech.ydb.topic.settings.ReadEventHandlersSettings;
 import tech.ydb.topic.settings.ReaderSettings;
+import tech.ydb.topic.settings.StartPartitionSessionSettings;
 import tech.ydb.topic.settings.TopicReadSettings;
 
 /**
+ * Обработка changefeed issues/updates.
+ * <p>
+ * Сообщения читаются асинхронным читателем: пачки одной партиции SDK передаёт последовательно,
+ * а разные партиции обрабатываются одновременно на пуле из workerThreads потоков.
+ * Каждая пачка разбирается в типизированные изменения {@link IssueChange} прямо из байт сообщений,
+ * целиком передаётся обработчику и затем подтверждается одним коммитом.
+ * <p>
+ * Если обработчик бросил исключение, пачка повторяется с нарастающей паузой, пока не будет обработана.
+ * SDK не передаёт следующие события партиции, пока не завершилась обработка предыдущего, поэтому
+ * более поздние пачки партиции не попадут к обработчику раньше упавшей, и обработчики могут отбрасывать
+ * повторы по наибольшему применённому смещению партиции. Пачка, которую не удалось обработать
+ * до {@link #shutdown()}, не подтверждается, и после перезапуска сервер отдаст её повторно -
+ * обработка выполняется не менее одного раза.
+ * <p>
+ * Воркер работает, пока не будет вызван {@link #shutdown()}. Остановку по сигналу процесса
+ * организует владелец воркера, см. {@link ChangefeedApplication}.
+ *
  * @author Kirill Kurdyukov
  */
 public class ReaderChangefeedWorker {
-    private static final Logger LOGGER = LoggerFactory.getLogger(Application.class);
+    private static final Logger LOGGER = LoggerFactory.getLogger(ReaderChangefeedWorker.class);
+    private static final long MIN_RETRY_DELAY_MILLIS = 100;
+    private static final long MAX_RETRY_DELAY_MILLIS = 5000;
 
-    private final SyncReader reader;
+    /**
+     * Обработчик изменений одной партиции. Вызовы для одной партиции никогда не выполняются одновременно,
+     * изменения внутри партиции передаются в порядке их применения к таблице.
+     */
+    public interface ChangeHandler {
+        void handle(long partitionId, List<IssueChange> changes);
 
-    public ReaderChangefeedWorker(TopicClient topicClient) {
-        // Создаем reader для чтения изменений из топика changefeed
-        // С точки зрения читателя это обычный топик.
-        this.reader = topicClient.createSyncReader(
+        /**
+         * Смещение, с которого нужно читать партицию, если обработчик хранит прогресс сам.
+         * null - продолжить с последнего коммита читателя.
+         */
+        default Long startOffset(long partitionId) {
+            return null;
+        }
+    }
+
+    private final ExecutorService executor;
+    private final AsyncReader reader;
+    private final AtomicBoolean stopped = new AtomicBoolean();
+    private final CountDownLatch terminated = new CountDownLatch(1);
+    private final AtomicLong processedMessages = new AtomicLong();
+    private final AtomicLong processedChanges = new AtomicLong();
+    private final long startNanos = System.nanoTime();
+
+    public ReaderChangefeedWorker(TopicClient topicClient, String consumerName, int workerThreads, ChangeHandler handler) {
+        this.executor = Executors.newFixedThreadPool(workerThreads);
+
+        // С точки зрения читателя changefeed - это обычный топик
+        this.reader = topicClient.createAsyncReader(
                 ReaderSettings.newBuilder()
-                        .setConsumerName("test")
-                        .setTopics(
-                                List.of(TopicReadSettings.newBuilder().setPath("issues/updates").build())
-                        )
+                        .setConsumerName(consumerName)
+                        .setTopics(List.of(TopicReadSettings.newBuilder().setPath("issues/updates").build()))
+                        .build(),
+                ReadEventHandlersSettings.newBuilder()
+                        .setExecutor(executor)
+                        .setEventHandler(new Handler(handler))
                         .build()
         );
+    }
+
+    public void start() {
+        reader.init().join();
+
+        LOGGER.info("Started changefeed worker!");
+    }
 
-        reader.init();
+    /**
+     * Блокируется до завершения {@link #shutdown()}.
+     */
+    public void awaitTermination() throws InterruptedException {
+        terminated.await();
     }
 
-    public void readChangefeed() {
-        CompletableFuture.runAsync(
-                () -> {
-                    LOGGER.info("Started read worker!");
+    public void shutdown() {
+        if (!stopped.compareAndSet(false, true)) {
+            return;
+        }
+
+        // Дожидаемся обработки уже полученных пачек и отправки их коммитов,
+        // повторы упавших пачек прерываются флагом stopped
+        reader.shutdown().join();
+        executor.shutdown();
+
+        try {
+            if (!executor.awaitTermination(1, TimeUnit.MINUTES)) {
+                LOGGER.warn("Changefeed handlers did not finish in time");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        var elapsedSeconds = Math.max(System.nanoTime() - startNanos, 1) / 1_000_000_000.0;
+        LOGGER.info("Stopped changefeed worker: {} messages, {} changes ({} messages/s)",
+                processedMessages.get(), processedChanges.get(), Math.round(processedMessages.get() / elapsedSeconds));
+
+        terminated.countDown();
+    }
+
+    private class Handler extends AbstractReadEventHandler {
+        private final ChangeHandler handler;
+
+        private Handler(ChangeHandler handler) {
+            this.handler = handler;
+        }
+
+        @Override
+        public void onStartPartitionSession(StartPartitionSessionEvent event) {
+            var partitionId = event.getPartitionSession().getPartitionId();
+            var startOffset = handler.startOffset(partitionId);
 
-                    while (true) {
-                        try {
-                            var message = reader.receive(1, TimeUnit.SECONDS);
+            if (startOffset == null) {
+                LOGGER.info("Started partition session for partition {}", partitionId);
 
-                            if (message == null) {
-                                continue;
-                            }
+                event.confirm();
+                return;
+            }
 
-                            LOGGER.info("Received message: {}", new String(message.getData()));
+            LOGGER.info("Started partition session for partition {} from offset {}", partitionId, startOffset);
 
-                            if (message.getSeqNo() == 4 /* отслеживаем 4 действия */) {
-                                break;
-                            }
-                        } catch (Exception e) {
-                            // Ignored
-                        }
+            event.confirm(StartPartitionSessionSettings.newBuilder()
+                    .setReadOffset(startOffset)
+                    .setCommitOffset(startOffset)
+                    .build()
+            );
+        }
+
+        @Override
+        public void onMessages(DataReceivedEvent event) {
+            var partitionId = event.getPartitionSession().getPartitionId();
+            var messages = event.getMessages();
+            var delayMillis = MIN_RETRY_DELAY_MILLIS;
+
+            // Пока пачка не обработана, следующие пачки партиции не передаются обработчику
+            while (true) {
+                try {
+                    processedChanges.addAndGet(handle(partitionId, messages));
+                    break;
+                } catch (RuntimeException e) {
+                    if (stopped.get()) {
+                        // Пачка не подтверждается и будет прочитана повторно после перезапуска
+                        throw e;
                     }
 
-                    LOGGER.info("Stopped read worker!");
+                    LOGGER.warn("Failed to handle changes of partition {}, retry in {} ms: {}",
+                            partitionId, delayMillis, e.getMessage());
+                }
+
+                sleep(delayMillis);
+                delayMillis = Math.min(delayMillis * 2, MAX_RETRY_DELAY_MILLIS);
+            }
+
+            processedMessages.addAndGet(messages.size());
+
+            // Один коммит на всю пачку сообщений
+            event.commit().whenComplete((ignored, th) -> {
+                if (th != null) {
+                    LOGGER.warn("Failed to commit changes of partition {}: {}", partitionId, th.getMessage());
+                }
+            });
+        }
+
+        private int handle(long partitionId, List<Message> messages) {
+            var changes = new ArrayList<IssueChange>(messages.size());
+
+            for (var message : messages) {
+                var change = IssueChangeParser.parse(message.getData(), message.getOffset());
+
+                // служебные записи без ключа пропускаются
+                if (change != null) {
+                    changes.add(change);
                 }
-        ).join();
+            }
+
+            if (!changes.isEmpty()) {
+                handler.handle(partitionId, changes);
+            }
+
+            return changes.size();
+        }
+
+        private void sleep(long millis) {
+            try {
+                TimeUnit.MILLISECONDS.sleep(millis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+
+                throw new RuntimeException(e);
+            }
+        }
+
+        @Override
+        public void onStopPartitionSession(StopPartitionSessionEvent event) {
+            LOGGER.info("Stopped partition session for partition {}", event.getPartitionId());
+
+            event.confirm();
+        }
 
-        reader.shutdown();
+        @Override
+        public void onPartitionSessionClosed(PartitionSessionClosedEvent event) {
+            LOGGER.info("Closed partition session for partition {}", event.getPartitionSession().getPartitionId());
+        }
     }
 }
@@ -49,16 +49,77 @@ public class SchemaYdbRepository {
         );
 
         queryServiceHelper.executeQuery("ALTER TOPIC `issues/updates` ADD CONSUMER test;");
+
+        // Счётчики тикетов, которые поддерживает IssueCountsProjector по changefeed
+        queryServiceHelper.executeQuery("""
+                CREATE TABLE issue_counts_by_status (
+                    status Text NOT NULL,
+                    issue_count Int64 NOT NULL,
+                    PRIMARY KEY (status)
+                );
+                CREATE TABLE issue_counts_by_author (
+                    author Text NOT NULL,
+                    issue_count Int64 NOT NULL,
+                    PRIMARY KEY (author)
+                );
+                CREATE TABLE issue_counts_progress (
+                    partition_id Int64 NOT NULL,
+                    last_offset Int64 NOT NULL,
+                    PRIMARY KEY (partition_id)
+                );
+                """
+        );
+        queryServiceHelper.executeQuery("ALTER TOPIC `issues/updates` ADD CONSUMER " + IssueCountsProjector.CONSUMER_NAME + ";");
+        queryServiceHelper.executeQuery("ALTER TOPIC `issues/updates` ADD CONSUMER " + TitleIndexProjector.CONSUMER_NAME + ";");
+
+        // id последнего снимка индекса заголовков, см. TitleIndexProjector
+        queryServiceHelper.executeQuery("""
+                CREATE TABLE title_index_snapshots (
+                    consumer Text NOT NULL,
+                    snapshot_id Text NOT NULL,
+                    PRIMARY KEY (consumer)
+                );
+                """
+        );
     }
 
     public void createAuthorIndex() {
         queryServiceHelper.executeQuery("ALTER TABLE issues ADD INDEX authorIndex GLOBAL ON (author);");
     }
 
+    /**
+     * Покрывающий индекс: кроме ключа (author, id) хранит копию title, поэтому список заголовков автора
+     * читается из индекса без обращения к основной таблице. Плата - запись title в индекс при каждом изменении.
+     */
+    public void createAuthorTitleIndex() {
+        queryServiceHelper.executeQuery("ALTER TABLE issues ADD INDEX authorTitleIndex GLOBAL ON (author) COVER (title);");
+    }
+
+    /**
+     * Таблица для {@link ShardedLinkCounterRepository}: приращения link_count тикета
+     * распределяются по нескольким строкам (issue_id, shard).
+     */
+    public void createShardedLinkCounters() {
+        queryServiceHelper.executeQuery("""
+                CREATE TABLE issue_link_counters (
+                    issue_id Int64 NOT NULL,
+                    shard Int32 NOT NULL,
+                    link_count Int64 NOT NULL,
+                    PRIMARY KEY (issue_id, shard)
+                );
+                """
+        );
+    }
+
     public void dropSchema() {
         queryServiceHelper.executeQuery("""
                 DROP TABLE IF EXISTS issues;
                 DROP TABLE IF EXISTS links;
+                DROP TABLE IF EXISTS issue_counts_by_status;
+                DROP TABLE IF EXISTS issue_counts_by_author;
+                DROP TABLE IF EXISTS issue_counts_progress;
+                DROP TABLE IF EXISTS issue_link_counters;
+                DROP TABLE IF EXISTS title_index_snapshots;
                 """
         );
     }
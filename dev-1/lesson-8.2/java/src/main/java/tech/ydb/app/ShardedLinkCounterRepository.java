@@ -0,0 +1,224 @@
+package tech.ydb.app;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import tech.ydb.common.transaction.TxMode;
+import tech.ydb.query.tools.QueryReader;
+import tech.ydb.query.tools.SessionRetryContext;
+import tech.ydb.table.query.Params;
+import tech.ydb.table.values.ListType;
+import tech.ydb.table.values.PrimitiveType;
+import tech.ydb.table.values.PrimitiveValue;
+
+/**
+ * Счётчики связей тикетов, разложенные по нескольким строкам таблицы issue_link_counters.
+ * <p>
+ * {@link IssueYdbRepository#linkTicketsNoInteractive(long, long)} увеличивает link_count в строке самого тикета,
+ * поэтому все транзакции, связывающие популярный тикет, конфликтуют на одной строке и повторяются.
+ * Здесь приращение записывается в одну из shards строк (issue_id, shard), выбранную случайно,
+ * и одновременные связывания одного тикета в большинстве случаев попадают в разные строки.
+ * Связывание несуществующего тикета отклоняется, поэтому у каждой строки-шарда есть строка в issues,
+ * пока тикет не удалён.
+ * <p>
+ * Полное значение счётчика - issues.link_count плюс сумма строк тикета в issue_link_counters.
+ * {@link LinkCountCompactor} периодически переносит накопленные строки в issues.link_count,
+ * так что число строк на тикет и стоимость чтения остаются ограниченными.
+ * <p>
+ * Таблица создаётся {@link SchemaYdbRepository#createShardedLinkCounters()}.
+ *
+ * @author Kirill Kurdyukov
+ */
+public class ShardedLinkCounterRepository {
+    private static final YqlStatement LINK_TICKETS = YqlStatement.register("shardedLinkTickets", """
+            DECLARE $t1 AS Int64;
+            DECLARE $t2 AS Int64;
+            DECLARE $shard1 AS Int32;
+            DECLARE $shard2 AS Int32;
+
+            $increments = AS_TABLE(AsList(
+                AsStruct($t1 AS issue_id, $shard1 AS shard),
+                AsStruct($t2 AS issue_id, $shard2 AS shard)
+            ));
+
+            -- приращения для несуществующих тикетов не записываются, иначе их строки-шарды
+            -- компактору было бы некуда перенести; строки тикетов только читаются и не конфликтуют между собой
+            $both_exist = (SELECT COUNT(*) FROM issues WHERE id IN ($t1, $t2)) = 2;
+
+            SELECT $both_exist AS linked;
+
+            -- меняется только выбранная строка-шард, а не строка тикета в issues
+            UPSERT INTO issue_link_counters
+            SELECT i.issue_id AS issue_id, i.shard AS shard, COALESCE(c.link_count, 0) + 1 AS link_count
+            FROM $increments AS i LEFT JOIN issue_link_counters AS c
+            ON i.issue_id = c.issue_id AND i.shard = c.shard
+            WHERE $both_exist;
+
+            INSERT INTO links (source, destination)
+            SELECT source, destination FROM AS_TABLE(AsList(
+                AsStruct($t1 AS source, $t2 AS destination),
+                AsStruct($t2 AS source, $t1 AS destination)
+            ))
+            WHERE $both_exist;
+            """);
+
+    private static final YqlStatement READ_LINK_COUNT = YqlStatement.register("shardedReadLinkCount", """
+            DECLARE $id AS Int64;
+
+            $sharded = COALESCE(
+                (SELECT SUM(link_count) FROM issue_link_counters WHERE issue_id = $id), 0
+            );
+
+            SELECT COALESCE(link_count, 0) + $sharded FROM issues WHERE id = $id;
+            """);
+
+    private static final YqlStatement FIND_COMPACTION_CANDIDATES = YqlStatement.register("shardedFindCompactionCandidates", """
+            DECLARE $from_issue_id AS Int64;
+            DECLARE $limit AS Uint64;
+
+            SELECT DISTINCT issue_id FROM (
+                SELECT issue_id FROM issue_link_counters
+                WHERE issue_id >= $from_issue_id
+                ORDER BY issue_id
+                LIMIT $limit
+            )
+            ORDER BY issue_id;
+            """);
+
+    private static final YqlStatement COMPACT = YqlStatement.register("shardedCompact", """
+            DECLARE $ids AS List<Int64>;
+
+            $sums =
+            SELECT issue_id, SUM(link_count) AS delta
+            FROM issue_link_counters
+            WHERE issue_id IN $ids
+            GROUP BY issue_id;
+
+            -- именованные выражения вычисляются в момент использования,
+            -- поэтому сначала переносим суммы в issues и только потом удаляем строки-шарды
+            UPDATE issues ON
+            SELECT i.id AS id, COALESCE(i.link_count, 0) + s.delta AS link_count
+            FROM $sums AS s JOIN issues AS i ON s.issue_id = i.id;
+
+            -- связывание не пишет строки-шарды несуществующих тикетов, поэтому строки без тикета
+            -- остаются только от удалённых тикетов и удаляются вместе с остальными
+            DELETE FROM issue_link_counters ON
+            SELECT issue_id, shard FROM issue_link_counters
+            WHERE issue_id IN $ids;
+            """);
+
+    private final SessionRetryContext retryCtx;
+    private final int shards;
+
+    public ShardedLinkCounterRepository(SessionRetryContext retryCtx, int shards) {
+        if (shards <= 0) {
+            throw new IllegalArgumentException("Shards count must be positive: " + shards);
+        }
+
+        this.retryCtx = retryCtx;
+        this.shards = shards;
+    }
+
+    public void linkTickets(long idT1, long idT2) {
+        linkTicketsAsync(idT1, idT2).join();
+    }
+
+    /**
+     * Связывание двух разных тикетов. Связь тикета с самим собой отклоняется IllegalArgumentException:
+     * в отличие от {@link IssueYdbRepository#linkTickets(List)}, который молча пропускает такие пары в пачке,
+     * здесь пара единственная, и пропуск выглядел бы для вызывающего кода как успешное связывание.
+     */
+    public CompletableFuture<Void> linkTicketsAsync(long idT1, long idT2) {
+        if (idT1 == idT2) {
+            throw new IllegalArgumentException("Issue can not be linked to itself: " + idT1);
+        }
+
+        return retryCtx.supplyResult(session -> {
+            // Шард выбирается заново при каждой попытке, чтобы повтор не упёрся в ту же строку
+            var random = ThreadLocalRandom.current();
+            var params = Params.of(
+                    "$t1", PrimitiveValue.newInt64(idT1),
+                    "$t2", PrimitiveValue.newInt64(idT2),
+                    "$shard1", PrimitiveValue.newInt32(random.nextInt(shards)),
+                    "$shard2", PrimitiveValue.newInt32(random.nextInt(shards))
+            );
+
+            return QueryReader.readFrom(LINK_TICKETS.createQuery(session, TxMode.SERIALIZABLE_RW, params));
+        }).thenAccept(result -> {
+            var resultSet = result.getValue().getResultSet(0);
+
+            if (!resultSet.next() || !resultSet.getColumn(0).getBool()) {
+                throw new IllegalArgumentException("Issue " + idT1 + " or " + idT2 + " does not exist");
+            }
+        });
+    }
+
+    /**
+     * Полное число связей тикета. Читает строку тикета и не больше shards строк счётчиков.
+     */
+    public long linkCount(long id) {
+        var resultSet = retryCtx.supplyResult(
+                session -> QueryReader.readFrom(
+                        READ_LINK_COUNT.createQuery(session, TxMode.SNAPSHOT_RO, Params.of("$id", PrimitiveValue.newInt64(id)))
+                )
+        ).join().getValue().getResultSet(0);
+
+        return resultSet.next() ? resultSet.getColumn(0).getInt64() : 0;
+    }
+
+    /**
+     * Один проход компактора по всей таблице issue_link_counters: строки-шарды тикетов пачками
+     * по batchSize строк переносятся в issues.link_count и удаляются. Возвращает число обработанных тикетов.
+     * <p>
+     * Транзакция компактора читает все строки тикета и конфликтует с одновременными приращениями,
+     * поэтому проходы стоит выполнять редко относительно потока связываний.
+     */
+    public int compact(int batchSize) {
+        var compacted = 0;
+        var fromIssueId = Long.MIN_VALUE;
+
+        while (true) {
+            var ids = findCompactionCandidates(fromIssueId, batchSize);
+            if (ids.isEmpty()) {
+                return compacted;
+            }
+
+            var idsParam = ListType.of(PrimitiveType.Int64).newValue(
+                    ids.stream().map(PrimitiveValue::newInt64).toList()
+            );
+
+            retryCtx.supplyResult(
+                    session -> COMPACT.createQuery(session, TxMode.SERIALIZABLE_RW, Params.of("$ids", idsParam)).execute()
+            ).join().getStatus().expectSuccess("Failed compact link counters");
+
+            compacted += ids.size();
+
+            var lastIssueId = ids.get(ids.size() - 1);
+            if (lastIssueId == Long.MAX_VALUE) {
+                return compacted;
+            }
+            fromIssueId = lastIssueId + 1;
+        }
+    }
+
+    private List<Long> findCompactionCandidates(long fromIssueId, int limit) {
+        var resultSet = retryCtx.supplyResult(
+                session -> QueryReader.readFrom(FIND_COMPACTION_CANDIDATES.createQuery(
+                        session,
+                        TxMode.SNAPSHOT_RO,
+                        Params.of(
+                                "$from_issue_id", PrimitiveValue.newInt64(fromIssueId),
+                                "$limit", PrimitiveValue.newUint64(limit)
+                        )
+                ))
+        ).join().getValue().getResultSet(0);
+
+        var ids = new ArrayList<Long>();
+        while (resultSet.next()) {
+            ids.add(resultSet.getColumn(0).getInt64());
+        }
+
+        return ids;
+    }
+}
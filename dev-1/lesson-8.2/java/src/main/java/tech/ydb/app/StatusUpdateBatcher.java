@@ -0,0 +1,156 @@
+package tech.ydb.app;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Объединение множества вызовов updateStatus в одну транзакцию.
+ * <p>
+ * Обновления копятся в буфере не дольше linger или до maxBatchSize разных тикетов, после чего
+ * отправляются одним запросом UPDATE issues ON SELECT ... FROM AS_TABLE($batch).
+ * Повторные обновления одного тикета внутри буфера схлопываются: записывается последний статус.
+ * Future каждого вызова завершается после коммита пачки, в которую попало обновление.
+ * <p>
+ * Одновременно выполняется не больше одной пачки: пока она в работе, новые обновления копятся в буфере.
+ * Так обновления одного тикета не могут быть применены в обратном порядке.
+ * Буфер тоже ограничен maxBatchSize тикетами: если он заполнен, а пачка ещё пишется,
+ * updateStatus блокируется до её завершения, поэтому пачка никогда не превышает maxBatchSize.
+ *
+ * @author Kirill Kurdyukov
+ */
+public class StatusUpdateBatcher implements AutoCloseable {
+    private final IssueYdbRepository issueYdbRepository;
+    private final int maxBatchSize;
+    private final long lingerNanos;
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        var thread = new Thread(runnable, "status-update-batcher");
+        thread.setDaemon(true);
+
+        return thread;
+    });
+
+    private final Object lock = new Object();
+    private LinkedHashMap<Long, String> statuses = new LinkedHashMap<>();
+    private List<CompletableFuture<Void>> waiters = new ArrayList<>();
+    private ScheduledFuture<?> lingerTimer;
+    private boolean flushInProgress = false;
+    private CompletableFuture<Void> lastFlush = CompletableFuture.completedFuture(null);
+
+    public StatusUpdateBatcher(IssueYdbRepository issueYdbRepository, int maxBatchSize, Duration linger) {
+        this.issueYdbRepository = issueYdbRepository;
+        this.maxBatchSize = maxBatchSize;
+        this.lingerNanos = linger.toNanos();
+    }
+
+    public CompletableFuture<Void> updateStatus(long id, String status) {
+        var future = new CompletableFuture<Void>();
+
+        synchronized (lock) {
+            // новый тикет не помещается в заполненный буфер, пока предыдущая пачка не записана
+            while (flushInProgress && statuses.size() >= maxBatchSize && !statuses.containsKey(id)) {
+                try {
+                    lock.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+
+                    throw new RuntimeException(e);
+                }
+            }
+
+            statuses.remove(id); // последнее обновление должно оказаться в конце пачки
+            statuses.put(id, status);
+            waiters.add(future);
+
+            if (statuses.size() >= maxBatchSize) {
+                flushLocked();
+            } else if (lingerTimer == null) {
+                lingerTimer = scheduler.schedule(this::flush, lingerNanos, TimeUnit.NANOSECONDS);
+            }
+        }
+
+        return future;
+    }
+
+    /**
+     * Отправляет накопленные обновления, не дожидаясь истечения linger.
+     */
+    public void flush() {
+        synchronized (lock) {
+            flushLocked();
+        }
+    }
+
+    @Override
+    public void close() {
+        CompletableFuture<Void> pending;
+
+        // дожидаемся, пока будут записаны все пачки, включая те, что накопились за время предыдущей
+        do {
+            flush();
+
+            synchronized (lock) {
+                pending = lastFlush;
+            }
+
+            pending.exceptionally(th -> null).join();
+
+            synchronized (lock) {
+                if (statuses.isEmpty() && !flushInProgress) {
+                    break;
+                }
+            }
+        } while (true);
+
+        scheduler.shutdown();
+    }
+
+    private void flushLocked() {
+        if (lingerTimer != null) {
+            lingerTimer.cancel(false);
+            lingerTimer = null;
+        }
+
+        if (statuses.isEmpty() || flushInProgress) {
+            return;
+        }
+
+        Map<Long, String> batch = statuses;
+        var batchWaiters = waiters;
+        statuses = new LinkedHashMap<>();
+        waiters = new ArrayList<>();
+        flushInProgress = true;
+
+        lastFlush = issueYdbRepository.updateStatusesAsync(batch).whenComplete((ignored, th) -> {
+            // буфер освобождается до завершения future вызовов: их обработчики могут
+            // сразу вызвать updateStatus и не должны ждать на заполненном буфере в этом же потоке
+            synchronized (lock) {
+                flushInProgress = false;
+
+                // за время записи могли накопиться новые обновления
+                if (statuses.size() >= maxBatchSize) {
+                    flushLocked();
+                } else if (!statuses.isEmpty() && lingerTimer == null) {
+                    lingerTimer = scheduler.schedule(this::flush, lingerNanos, TimeUnit.NANOSECONDS);
+                }
+
+                lock.notifyAll();
+            }
+
+            for (var waiter : batchWaiters) {
+                if (th != null) {
+                    waiter.completeExceptionally(th);
+                } else {
+                    waiter.complete(null);
+                }
+            }
+        });
+    }
+}
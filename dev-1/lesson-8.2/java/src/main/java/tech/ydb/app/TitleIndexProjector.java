@@ -0,0 +1,132 @@
+package tech.ydb.app;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import tech.ydb.common.transaction.TxMode;
+import tech.ydb.query.tools.QueryReader;
+import tech.ydb.query.tools.SessionRetryContext;
+import tech.ydb.table.query.Params;
+import tech.ydb.table.values.PrimitiveValue;
+
+/**
+ * Поддержка {@link TitleSearchIndex} по changefeed issues/updates.
+ * <p>
+ * При создании загружается последний снимок индекса, и чтение каждой партиции продолжается со смещения,
+ * сохранённого в снимке, а не с коммита читателя: так изменения, полученные после снимка,
+ * применяются заново, и полная перестройка индекса при перезапуске не нужна. Если снимка нет,
+ * партиции читаются с начала, и индекс строится по записям начального сканирования.
+ * <p>
+ * Снимок перезаписывается каждые snapshotEveryChanges применённых изменений и при остановке.
+ * <p>
+ * Смещения в снимке имеют смысл только для того changefeed, по которому он построен, а Application
+ * пересоздаёт issues вместе с changefeed. Поэтому у каждого снимка есть случайный id, который после записи файла
+ * сохраняется в таблицу title_index_snapshots, удаляемую и создаваемую вместе со схемой. Снимок, id которого
+ * не совпадает с записанным в таблице, считается устаревшим: индекс строится заново с начала партиций.
+ *
+ * @author Kirill Kurdyukov
+ */
+public class TitleIndexProjector implements ReaderChangefeedWorker.ChangeHandler {
+    private static final Logger LOGGER = LoggerFactory.getLogger(TitleIndexProjector.class);
+
+    // Отдельный читатель changefeed, добавляется в SchemaYdbRepository.createSchema()
+    public static final String CONSUMER_NAME = "search";
+
+    private static final YqlStatement READ_SNAPSHOT_ID = YqlStatement.register("readTitleIndexSnapshotId", """
+            DECLARE $consumer AS Text;
+            SELECT snapshot_id FROM title_index_snapshots WHERE consumer = $consumer;
+            """);
+
+    private static final YqlStatement SAVE_SNAPSHOT_ID = YqlStatement.register("saveTitleIndexSnapshotId", """
+            DECLARE $consumer AS Text;
+            DECLARE $snapshot_id AS Text;
+            UPSERT INTO title_index_snapshots (consumer, snapshot_id) VALUES ($consumer, $snapshot_id);
+            """);
+
+    private final SessionRetryContext retryCtx;
+    private final TitleSearchIndex index;
+    private final Path snapshot;
+    private final long snapshotEveryChanges;
+    private final AtomicLong changesSinceSnapshot = new AtomicLong();
+    private final Object snapshotLock = new Object();
+
+    public TitleIndexProjector(
+            SessionRetryContext retryCtx,
+            TitleSearchIndex index,
+            Path snapshot,
+            long snapshotEveryChanges
+    ) {
+        this.retryCtx = retryCtx;
+        this.index = index;
+        this.snapshot = snapshot;
+        this.snapshotEveryChanges = snapshotEveryChanges;
+
+        try {
+            var snapshotId = readSnapshotId();
+
+            if (snapshotId != null && index.load(snapshot, snapshotId)) {
+                LOGGER.info("Loaded title index snapshot {}", snapshot);
+            } else if (Files.exists(snapshot)) {
+                LOGGER.info("Title index snapshot {} belongs to another changefeed, rebuilding index", snapshot);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public void handle(long partitionId, List<IssueChange> changes) {
+        var applied = 0;
+
+        for (var change : changes) {
+            if (index.apply(partitionId, change)) {
+                applied++;
+            }
+        }
+
+        if (changesSinceSnapshot.addAndGet(applied) >= snapshotEveryChanges) {
+            saveSnapshot();
+        }
+    }
+
+    @Override
+    public Long startOffset(long partitionId) {
+        var lastOffset = index.lastOffset(partitionId);
+
+        return lastOffset == null ? 0L : lastOffset + 1;
+    }
+
+    public void saveSnapshot() {
+        synchronized (snapshotLock) {
+            changesSinceSnapshot.set(0);
+
+            // Сначала файл, потом id в таблице: при сбое между ними снимок будет отброшен,
+            // а не применён к чужому changefeed
+            var snapshotId = UUID.randomUUID().toString();
+            try {
+                index.save(snapshot, snapshotId);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+
+            retryCtx.supplyResult(session -> SAVE_SNAPSHOT_ID.createQuery(session, TxMode.SERIALIZABLE_RW, Params.of(
+                    "$consumer", PrimitiveValue.newText(CONSUMER_NAME),
+                    "$snapshot_id", PrimitiveValue.newText(snapshotId)
+            )).execute()).join().getStatus().expectSuccess("Failed save title index snapshot id");
+        }
+    }
+
+    private String readSnapshotId() {
+        var resultSet = retryCtx.supplyResult(session -> QueryReader.readFrom(READ_SNAPSHOT_ID.createQuery(
+                session, TxMode.SNAPSHOT_RO, Params.of("$consumer", PrimitiveValue.newText(CONSUMER_NAME))
+        ))).join().getValue().getResultSet(0);
+
+        return resultSet.next() ? resultSet.getColumn(0).getText() : null;
+    }
+}
@@ -0,0 +1,281 @@
+package tech.ydb.app;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Инвертированный индекс заголовков тикетов: слово -> упорядоченный список id тикетов.
+ * <p>
+ * Заголовок разбивается на слова по символам, не являющимся буквами или цифрами, слова приводятся
+ * к нижнему регистру. Поиск возвращает тикеты, заголовки которых содержат все слова запроса.
+ * <p>
+ * Вместе с индексом хранится смещение последнего учтённого изменения каждой партиции changefeed,
+ * по которому после загрузки снимка чтение продолжается с того же места.
+ * <p>
+ * Формат снимка:
+ * <pre>
+ * magic, version, id снимка (UTF)
+ * число партиций, [partition_id, offset]...
+ * число слов, [длина слова (varint), слово (UTF-8), число id (varint), id (varint, разность с предыдущим)]...
+ * </pre>
+ * Списки id отсортированы, поэтому разности неотрицательны, и для частых слов с длинными списками
+ * занимают заметно меньше 8 байт на id.
+ *
+ * @author Kirill Kurdyukov
+ */
+public class TitleSearchIndex {
+    private static final int SNAPSHOT_MAGIC = 0x59444249; // "YDBI"
+    private static final int SNAPSHOT_VERSION = 2;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<String, TreeSet<Long>> postings = new HashMap<>();
+    private final Map<Long, Long> partitionOffsets = new HashMap<>();
+
+    /**
+     * Применяет изменение, если оно ещё не учтено. Возвращает false для повторно доставленного изменения.
+     * <p>
+     * Повтор определяется по наибольшему применённому смещению партиции. Это верно, только пока изменения
+     * партиции применяются по порядку без пропусков: {@link ReaderChangefeedWorker} повторяет упавшую
+     * пачку, не передавая следующие, и частично применённая пачка продолжается с первого неучтённого изменения.
+     */
+    public boolean apply(long partitionId, IssueChange change) {
+        lock.writeLock().lock();
+        try {
+            var lastOffset = partitionOffsets.get(partitionId);
+            if (lastOffset != null && change.offset() <= lastOffset) {
+                return false;
+            }
+
+            if (change.oldImage() != null && change.oldImage().title() != null) {
+                for (var token : tokenize(change.oldImage().title())) {
+                    var ids = postings.get(token);
+
+                    if (ids != null) {
+                        ids.remove(change.id());
+                        if (ids.isEmpty()) {
+                            postings.remove(token);
+                        }
+                    }
+                }
+            }
+
+            if (change.newImage() != null && change.newImage().title() != null) {
+                for (var token : tokenize(change.newImage().title())) {
+                    postings.computeIfAbsent(token, ignored -> new TreeSet<>()).add(change.id());
+                }
+            }
+
+            partitionOffsets.put(partitionId, change.offset());
+
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Смещение последнего учтённого изменения партиции или null, если изменений партиции ещё не было.
+     */
+    public Long lastOffset(long partitionId) {
+        lock.readLock().lock();
+        try {
+            return partitionOffsets.get(partitionId);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * id тикетов, заголовки которых содержат все слова запроса, по возрастанию.
+     */
+    public List<Long> search(String query) {
+        var tokens = tokenize(query);
+        if (tokens.isEmpty()) {
+            return List.of();
+        }
+
+        lock.readLock().lock();
+        try {
+            // Пересечение начинается с самого короткого списка
+            TreeSet<Long> smallest = null;
+            for (var token : tokens) {
+                var ids = postings.get(token);
+
+                if (ids == null) {
+                    return List.of();
+                }
+                if (smallest == null || ids.size() < smallest.size()) {
+                    smallest = ids;
+                }
+            }
+
+            var result = new ArrayList<Long>();
+            for (var id : smallest) {
+                var matchesAll = true;
+
+                for (var token : tokens) {
+                    if (!postings.get(token).contains(id)) {
+                        matchesAll = false;
+                        break;
+                    }
+                }
+
+                if (matchesAll) {
+                    result.add(id);
+                }
+            }
+
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Атомарно записывает снимок: сначала во временный файл, затем переименованием поверх старого.
+     */
+    public void save(Path snapshot, String snapshotId) throws IOException {
+        var tmp = snapshot.resolveSibling(snapshot.getFileName() + ".tmp");
+
+        lock.readLock().lock();
+        try (var out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+            out.writeInt(SNAPSHOT_MAGIC);
+            out.writeInt(SNAPSHOT_VERSION);
+            out.writeUTF(snapshotId);
+
+            out.writeInt(partitionOffsets.size());
+            for (var entry : partitionOffsets.entrySet()) {
+                out.writeLong(entry.getKey());
+                out.writeLong(entry.getValue());
+            }
+
+            out.writeInt(postings.size());
+            for (var entry : postings.entrySet()) {
+                var token = entry.getKey().getBytes(StandardCharsets.UTF_8);
+                writeVarLong(out, token.length);
+                out.write(token);
+
+                writeVarLong(out, entry.getValue().size());
+                long previous = 0;
+                for (var id : entry.getValue()) {
+                    writeVarLong(out, id - previous);
+                    previous = id;
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        Files.move(tmp, snapshot, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Загружает снимок, если он есть и его id совпадает с expectedSnapshotId.
+     * Иначе возвращает false и оставляет индекс без изменений.
+     */
+    public boolean load(Path snapshot, String expectedSnapshotId) throws IOException {
+        if (!Files.exists(snapshot)) {
+            return false;
+        }
+
+        lock.writeLock().lock();
+        try (var in = new DataInputStream(new BufferedInputStream(Files.newInputStream(snapshot)))) {
+            if (in.readInt() != SNAPSHOT_MAGIC) {
+                throw new IOException("Unsupported title index snapshot: " + snapshot);
+            }
+            // снимок старого формата не содержит id, поэтому тоже считается чужим
+            if (in.readInt() != SNAPSHOT_VERSION || !in.readUTF().equals(expectedSnapshotId)) {
+                return false;
+            }
+
+            postings.clear();
+            partitionOffsets.clear();
+
+            var partitions = in.readInt();
+            for (int i = 0; i < partitions; i++) {
+                partitionOffsets.put(in.readLong(), in.readLong());
+            }
+
+            var tokens = in.readInt();
+            for (int i = 0; i < tokens; i++) {
+                var token = new byte[(int) readVarLong(in)];
+                in.readFully(token);
+
+                var ids = new TreeSet<Long>();
+                var count = readVarLong(in);
+                long id = 0;
+                for (long j = 0; j < count; j++) {
+                    id += readVarLong(in);
+                    ids.add(id);
+                }
+
+                postings.put(new String(token, StandardCharsets.UTF_8), ids);
+            }
+
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    static List<String> tokenize(String text) {
+        var tokens = new ArrayList<String>();
+        var lowerCase = text.toLowerCase(Locale.ROOT);
+        var start = -1;
+
+        for (int i = 0; i <= lowerCase.length(); i++) {
+            var isTokenChar = i < lowerCase.length() && Character.isLetterOrDigit(lowerCase.charAt(i));
+
+            if (isTokenChar && start < 0) {
+                start = i;
+            } else if (!isTokenChar && start >= 0) {
+                var token = lowerCase.substring(start, i);
+                if (!tokens.contains(token)) {
+                    tokens.add(token);
+                }
+                start = -1;
+            }
+        }
+
+        return tokens;
+    }
+
+    private static void writeVarLong(DataOutputStream out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    private static long readVarLong(DataInputStream in) throws IOException {
+        long value = 0;
+
+        for (int shift = 0; shift < 64; shift += 7) {
+            var b = in.readByte();
+            value |= (long) (b & 0x7F) << shift;
+
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+
+        throw new EOFException("Malformed varint in title index snapshot");
+    }
+}
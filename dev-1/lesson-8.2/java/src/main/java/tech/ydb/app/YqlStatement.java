@@ -0,0 +1,166 @@
+package tech.ydb.app;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.LongAdder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import tech.ydb.common.transaction.TxMode;
+import tech.ydb.core.Result;
+import tech.ydb.query.QuerySession;
+import tech.ydb.query.QueryStream;
+import tech.ydb.query.QueryTransaction;
+import tech.ydb.query.result.QueryInfo;
+import tech.ydb.query.settings.ExecuteQuerySettings;
+import tech.ydb.query.settings.QueryStatsMode;
+import tech.ydb.table.query.Params;
+
+/**
+ * YQL-запрос репозитория, объявленный один раз.
+ * <p>
+ * Сервер кэширует скомпилированный план по тексту запроса, поэтому текст должен быть неизменным,
+ * а все переменные части передаваться через DECLARE-параметры. Тогда компиляция происходит
+ * только при первом выполнении, а дальше план берётся из кэша.
+ * <p>
+ * Каждое выполнение запрашивает у сервера базовую статистику, из которой накапливается время
+ * компиляции и выполнения, а также число попаданий в кэш планов.
+ * Общий список запросов и их статистику печатает {@link #logStats()}.
+ *
+ * @author Kirill Kurdyukov
+ */
+public class YqlStatement {
+    private static final Logger LOGGER = LoggerFactory.getLogger(YqlStatement.class);
+
+    private static final List<YqlStatement> STATEMENTS = new CopyOnWriteArrayList<>();
+
+    private static final ExecuteQuerySettings STATS_SETTINGS = ExecuteQuerySettings.newBuilder()
+            .withStatsMode(QueryStatsMode.BASIC)
+            .build();
+
+    private final String name;
+    private final String yql;
+
+    private final LongAdder executions = new LongAdder();
+    private final LongAdder cacheHits = new LongAdder();
+    private final LongAdder compileUs = new LongAdder();
+    private final LongAdder totalUs = new LongAdder();
+
+    private YqlStatement(String name, String yql) {
+        this.name = name;
+        this.yql = yql;
+    }
+
+    public static YqlStatement register(String name, String yql) {
+        var statement = new YqlStatement(name, yql);
+        STATEMENTS.add(statement);
+
+        return statement;
+    }
+
+    public static List<YqlStatement> statements() {
+        return List.copyOf(STATEMENTS);
+    }
+
+    public static void logStats() {
+        for (var statement : STATEMENTS) {
+            if (statement.executions() == 0) {
+                continue;
+            }
+
+            LOGGER.info("Statement {}: executions = {}, plan cache hits = {}, compile = {} us, execute = {} us",
+                    statement.name(),
+                    statement.executions(),
+                    statement.cacheHits(),
+                    statement.compileUs(),
+                    statement.executeUs()
+            );
+        }
+    }
+
+    public QueryStream createQuery(QuerySession session, TxMode txMode) {
+        return createQuery(session, txMode, Params.empty());
+    }
+
+    public QueryStream createQuery(QuerySession session, TxMode txMode, Params params) {
+        return new MeasuredQueryStream(session.createQuery(yql, txMode, params, STATS_SETTINGS));
+    }
+
+    public QueryStream createQuery(QueryTransaction transaction, Params params) {
+        return new MeasuredQueryStream(transaction.createQuery(yql, false, params, STATS_SETTINGS));
+    }
+
+    public QueryStream createQueryWithCommit(QueryTransaction transaction, Params params) {
+        return new MeasuredQueryStream(transaction.createQuery(yql, true, params, STATS_SETTINGS));
+    }
+
+    public String name() {
+        return name;
+    }
+
+    public String yql() {
+        return yql;
+    }
+
+    public long executions() {
+        return executions.sum();
+    }
+
+    public long cacheHits() {
+        return cacheHits.sum();
+    }
+
+    public long compileUs() {
+        return compileUs.sum();
+    }
+
+    public long executeUs() {
+        return totalUs.sum() - compileUs.sum();
+    }
+
+    private void record(QueryInfo queryInfo) {
+        executions.increment();
+
+        if (!queryInfo.hasStats()) {
+            return;
+        }
+
+        var stats = queryInfo.getStats();
+        var compilation = stats.getCompilationStats();
+
+        if (compilation != null) {
+            if (compilation.isFromCache()) {
+                cacheHits.increment();
+            }
+            compileUs.add(compilation.getDurationUs());
+        }
+        totalUs.add(stats.getTotalDurationUs());
+    }
+
+    /**
+     * Обёртка над QueryStream, которая после выполнения запроса учитывает его статистику.
+     */
+    private class MeasuredQueryStream implements QueryStream {
+        private final QueryStream delegate;
+
+        private MeasuredQueryStream(QueryStream delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public CompletableFuture<Result<QueryInfo>> execute(PartsHandler handler) {
+            return delegate.execute(handler).thenApply(result -> {
+                if (result.isSuccess()) {
+                    record(result.getValue());
+                }
+
+                return result;
+            });
+        }
+
+        @Override
+        public void cancel() {
+            delegate.cancel();
+        }
+    }
+}